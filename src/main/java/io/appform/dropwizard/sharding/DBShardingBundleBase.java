@@ -23,6 +23,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import io.appform.dropwizard.sharding.admin.BlacklistShardTask;
+import io.appform.dropwizard.sharding.admin.BucketTrafficTask;
 import io.appform.dropwizard.sharding.admin.UnblacklistShardTask;
 import io.appform.dropwizard.sharding.caching.LookupCache;
 import io.appform.dropwizard.sharding.caching.RelationalCache;
@@ -35,19 +36,28 @@ import io.appform.dropwizard.sharding.dao.LookupDao;
 import io.appform.dropwizard.sharding.dao.RelationalDao;
 import io.appform.dropwizard.sharding.dao.WrapperDao;
 import io.appform.dropwizard.sharding.filters.TransactionFilter;
+import io.appform.dropwizard.sharding.execution.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.execution.ShardExecutors;
 import io.appform.dropwizard.sharding.healthcheck.HealthCheckManager;
 import io.appform.dropwizard.sharding.listeners.TransactionListener;
+import io.appform.dropwizard.sharding.metrics.BucketTrafficTracker;
 import io.appform.dropwizard.sharding.metrics.TransactionMetricManager;
 import io.appform.dropwizard.sharding.metrics.TransactionMetricObserver;
 import io.appform.dropwizard.sharding.observers.TransactionObserver;
+import io.appform.dropwizard.sharding.observers.internal.BulkheadObserver;
 import io.appform.dropwizard.sharding.observers.internal.FilteringObserver;
 import io.appform.dropwizard.sharding.observers.internal.ListenerTriggeringObserver;
+import io.appform.dropwizard.sharding.observers.internal.ShardLoadObserver;
 import io.appform.dropwizard.sharding.observers.internal.TerminalTransactionObserver;
 import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.BucketRouting;
 import io.appform.dropwizard.sharding.sharding.InMemoryLocalShardBlacklistingStore;
 import io.appform.dropwizard.sharding.sharding.ShardBlacklistingStore;
+import io.appform.dropwizard.sharding.sharding.ShardLoadProvider;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.appform.dropwizard.sharding.sharding.ShardingKeyType;
 import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.LoadAwareBucketIdExtractor;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
@@ -63,6 +73,7 @@ import lombok.val;
 import lombok.var;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
 import org.reflections.Reflections;
 
 import javax.persistence.Entity;
@@ -109,6 +120,19 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
 
     private TransactionObserver rootObserver;
 
+    private ShardLoadObserver shardLoadObserver;
+
+    private ScatterGatherExecutor scatterGatherExecutor;
+    private ShardExecutors shardExecutors;
+    @Getter
+    private BucketTrafficTracker bucketTrafficTracker;
+    /**
+     * Bucket to shard routing shared by all daos created by the bundle, so that buckets move between shards for all of
+     * them together
+     */
+    @Getter
+    private BucketRouting bucketRouting;
+
     protected DBShardingBundleBase(
             String dbNamespace,
             Class<?> entity,
@@ -161,6 +185,14 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
                     public PooledDataSourceFactory getDataSourceFactory(T t) {
                         return getConfig(t).getShards().get(shard);
                     }
+
+                    @Override
+                    protected void configure(org.hibernate.cfg.Configuration configuration) {
+                        //Group inserts by entity so that batched saves are not split into single row batches
+                        if (null == configuration.getProperty(AvailableSettings.ORDER_INSERTS)) {
+                            configuration.setProperty(AvailableSettings.ORDER_INSERTS, "true");
+                        }
+                    }
                 }));
     }
 
@@ -172,7 +204,18 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
                     "Shard count provided through environment does not match the size of the shard configuration list");
         }
         sessionFactories = shardBundles.stream().map(HibernateBundle::getSessionFactory).collect(Collectors.toList());
+        environment.lifecycle().manage(shardManager);
         this.shardingOptions = getShardingOptions(configuration);
+        this.scatterGatherExecutor = ScatterGatherExecutor.create(shardingOptions, numShards);
+        environment.lifecycle().manage(scatterGatherExecutor);
+        this.shardExecutors = ShardExecutors.create(shardingOptions, numShards);
+        environment.lifecycle().manage(shardExecutors);
+        this.bucketTrafficTracker = BucketTrafficTracker.create(shardingOptions, shardManager.numBuckets());
+        this.bucketRouting = new BucketRouting(shardManager.numBuckets());
+        bucketTrafficTracker.registerMetrics(environment.metrics(),
+                                             MetricRegistry.name("db.sharding", dbNamespace, "traffic"),
+                                             shardingOptions);
+        environment.admin().addTask(new BucketTrafficTask(bucketTrafficTracker, shardManager, bucketRouting));
         environment.admin().addTask(new BlacklistShardTask(shardManager));
         environment.admin().addTask(new UnblacklistShardTask(shardManager));
         healthCheckManager.manageHealthChecks(getConfig(configuration).getBlacklist(), environment);
@@ -210,6 +253,22 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         shardBundles.forEach(hibernateBundle -> bootstrap.addBundle((ConfiguredBundle) hibernateBundle));
     }
 
+    /**
+     * In flight transactions per shard. Available once the bundle has been run.
+     */
+    public ShardLoadProvider getShardLoadProvider() {
+        return shardLoadObserver;
+    }
+
+    /**
+     * Random placement that steers new entities away from shards with more transactions in flight.
+     * Use with {@link #createRelatedObjectDao(Class, BucketIdExtractor)} and similar, after the bundle has been run.
+     */
+    public <K> BucketIdExtractor<K> createLoadAwareBucketIdExtractor() {
+        Preconditions.checkState(null != shardLoadObserver, "Bundle has not been run yet");
+        return new LoadAwareBucketIdExtractor<>(shardManager, shardLoadObserver);
+    }
+
     @VisibleForTesting
     public void runBundles(T configuration, Environment environment) {
         shardBundles.forEach(hibernateBundle -> {
@@ -251,10 +310,13 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
     LookupDao<EntityType> createParentObjectDao(Class<EntityType> clazz) {
         return new LookupDao<>(this.sessionFactories, clazz,
                 new ShardCalculator<>(this.shardManager,
-                        new ConsistentHashBucketIdExtractor<>(this.shardManager)),
+                        new ConsistentHashBucketIdExtractor<>(this.shardManager),
+                        bucketTrafficTracker, bucketRouting),
                 this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
     }
 
     public <EntityType, T extends Configuration>
@@ -264,11 +326,14 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         return new CacheableLookupDao<>(this.sessionFactories,
                 clazz,
                 new ShardCalculator<>(this.shardManager,
-                        new ConsistentHashBucketIdExtractor<>(this.shardManager)),
+                        new ConsistentHashBucketIdExtractor<>(this.shardManager),
+                        bucketTrafficTracker, bucketRouting),
                 cacheManager,
                 this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
     }
 
     public <EntityType, T extends Configuration>
@@ -277,10 +342,22 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
             BucketIdExtractor<String> bucketIdExtractor) {
         return new LookupDao<>(this.sessionFactories,
                 clazz,
-                new ShardCalculator<>(this.shardManager, bucketIdExtractor),
+                new ShardCalculator<>(this.shardManager, bucketIdExtractor, bucketTrafficTracker, bucketRouting),
                 this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
+    }
+
+    /**
+     * Creates a lookup dao for an entity whose lookup key holds a value of the given type. See {@link ShardingKeyType}.
+     */
+    public <EntityType, T extends Configuration>
+    LookupDao<EntityType> createParentObjectDao(
+            Class<EntityType> clazz,
+            ShardingKeyType keyType) {
+        return createParentObjectDao(clazz, keyType.extractor(this.shardManager));
     }
 
     public <EntityType, T extends Configuration>
@@ -290,11 +367,13 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
             LookupCache<EntityType> cacheManager) {
         return new CacheableLookupDao<>(this.sessionFactories,
                 clazz,
-                new ShardCalculator<>(this.shardManager, bucketIdExtractor),
+                new ShardCalculator<>(this.shardManager, bucketIdExtractor, bucketTrafficTracker, bucketRouting),
                 cacheManager,
                 this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
     }
 
 
@@ -302,9 +381,13 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
     RelationalDao<EntityType> createRelatedObjectDao(Class<EntityType> clazz) {
         return new RelationalDao<>(this.sessionFactories, clazz,
                 new ShardCalculator<>(this.shardManager,
-                        new ConsistentHashBucketIdExtractor<>(this.shardManager)),
+                        new ConsistentHashBucketIdExtractor<>(this.shardManager),
+                        bucketTrafficTracker, bucketRouting),
+                this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
     }
 
 
@@ -315,10 +398,14 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         return new CacheableRelationalDao<>(this.sessionFactories,
                 clazz,
                 new ShardCalculator<>(this.shardManager,
-                        new ConsistentHashBucketIdExtractor<>(this.shardManager)),
+                        new ConsistentHashBucketIdExtractor<>(this.shardManager),
+                        bucketTrafficTracker, bucketRouting),
                 cacheManager,
+                this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
     }
 
 
@@ -328,9 +415,23 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
             BucketIdExtractor<String> bucketIdExtractor) {
         return new RelationalDao<>(this.sessionFactories,
                 clazz,
-                new ShardCalculator<>(this.shardManager, bucketIdExtractor),
+                new ShardCalculator<>(this.shardManager, bucketIdExtractor, bucketTrafficTracker, bucketRouting),
+                this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
+    }
+
+    /**
+     * Creates a relational dao for an entity whose parent key holds a value of the given type. See
+     * {@link ShardingKeyType}.
+     */
+    public <EntityType, T extends Configuration>
+    RelationalDao<EntityType> createRelatedObjectDao(
+            Class<EntityType> clazz,
+            ShardingKeyType keyType) {
+        return createRelatedObjectDao(clazz, keyType.extractor(this.shardManager));
     }
 
     public <EntityType, T extends Configuration>
@@ -340,10 +441,13 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
             RelationalCache<EntityType> cacheManager) {
         return new CacheableRelationalDao<>(this.sessionFactories,
                 clazz,
-                new ShardCalculator<>(this.shardManager, bucketIdExtractor),
+                new ShardCalculator<>(this.shardManager, bucketIdExtractor, bucketTrafficTracker, bucketRouting),
                 cacheManager,
+                this.shardingOptions,
                 shardInfoProvider,
-                rootObserver);
+                rootObserver,
+                scatterGatherExecutor,
+                shardExecutors);
     }
 
 
@@ -352,7 +456,8 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         return new WrapperDao<>(this.sessionFactories,
                 daoTypeClass,
                 new ShardCalculator<>(this.shardManager,
-                        new ConsistentHashBucketIdExtractor<>(this.shardManager)));
+                        new ConsistentHashBucketIdExtractor<>(this.shardManager),
+                        bucketTrafficTracker, bucketRouting));
     }
 
     public <EntityType, DaoType extends AbstractDAO<EntityType>, T extends Configuration>
@@ -361,7 +466,7 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
             BucketIdExtractor<String> bucketIdExtractor) {
         return new WrapperDao<>(this.sessionFactories,
                 daoTypeClass,
-                new ShardCalculator<>(this.shardManager, bucketIdExtractor));
+                new ShardCalculator<>(this.shardManager, bucketIdExtractor, bucketTrafficTracker, bucketRouting));
     }
 
     public <EntityType, DaoType extends AbstractDAO<EntityType>, T extends Configuration>
@@ -372,7 +477,8 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         return new WrapperDao<>(this.sessionFactories, daoTypeClass,
                 extraConstructorParamClasses, extraConstructorParamObjects,
                 new ShardCalculator<>(this.shardManager,
-                        new ConsistentHashBucketIdExtractor<>(this.shardManager)));
+                        new ConsistentHashBucketIdExtractor<>(this.shardManager),
+                        bucketTrafficTracker, bucketRouting));
     }
 
     private void setupObservers(final T config,
@@ -388,6 +494,12 @@ public abstract class DBShardingBundleBase<T extends Configuration> implements C
         }
         rootObserver = new TransactionMetricObserver(new TransactionMetricManager(getMetricConfig(config),
                 metricRegistry)).setNext(rootObserver);
+        val bulkheadConfig = getConfig(config).getBulkheadConfig();
+        if (null != bulkheadConfig) {
+            rootObserver = new BulkheadObserver(rootObserver, bulkheadConfig, metricRegistry);
+        }
+        shardLoadObserver = new ShardLoadObserver(rootObserver, shardInfoProvider, numShards);
+        rootObserver = shardLoadObserver;
         rootObserver = new FilteringObserver(rootObserver).addFilters(filters);
 
         //Print the observer chain
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding;
+
+import io.appform.dropwizard.sharding.sharding.ShardBlacklistingStore;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.appform.dropwizard.sharding.sharding.WeightedShardManager;
+import io.dropwizard.Configuration;
+import io.dropwizard.setup.Environment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * A dropwizard bundle that provides sharding over RDBMS instances of different sizes. Buckets are assigned to
+ * shards in proportion to shardWeights in the sharding config. Any number of shards is supported.
+ */
+@Slf4j
+public abstract class WeightedDBShardingBundle<T extends Configuration> extends DBShardingBundleBase<T> {
+
+    public WeightedDBShardingBundle(
+            String dbNamespace,
+            Class<?> entity,
+            Class<?>... entities) {
+        super(dbNamespace, entity, entities);
+    }
+
+    public WeightedDBShardingBundle(String dbNamespace, List<String> classPathPrefixList) {
+        super(dbNamespace, classPathPrefixList);
+    }
+
+    public WeightedDBShardingBundle(Class<?> entity, Class<?>... entities) {
+        super(entity, entities);
+    }
+
+    public WeightedDBShardingBundle(String... classPathPrefixes) {
+        super(classPathPrefixes);
+    }
+
+    @Override
+    protected ShardManager createShardManager(int numShards, ShardBlacklistingStore blacklistingStore) {
+        return new WeightedShardManager(numShards, blacklistingStore);
+    }
+
+    @Override
+    public void run(T configuration, Environment environment) {
+        //Shard manager is created before config is available, weights are applied once it is
+        final List<Integer> weights = getConfig(configuration).getShardWeights();
+        if (null != weights && !weights.isEmpty()) {
+            ((WeightedShardManager) getShardManager()).updateWeights(weights);
+        }
+        super.run(configuration, environment);
+    }
+}
@@ -0,0 +1,77 @@
+package io.appform.dropwizard.sharding.admin;
+
+import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
+import io.appform.dropwizard.sharding.metrics.BucketTrafficTracker;
+import io.appform.dropwizard.sharding.sharding.BucketRouting;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.dropwizard.servlets.tasks.Task;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prints the busiest buckets along with the shards they are currently routed to, and the busiest keys.
+ * Parameters: top - number of buckets and keys to print (default 10), reset - clear the counters if true.
+ */
+@Slf4j
+public class BucketTrafficTask extends Task {
+    private static final int DEFAULT_TOP = 10;
+
+    private final BucketTrafficTracker trafficTracker;
+    private final ShardManager shardManager;
+    private final BucketRouting routing;
+
+    /**
+     * @param routing Bucket routing of the bundle, so that moved buckets are reported on their new shard
+     */
+    public BucketTrafficTask(BucketTrafficTracker trafficTracker, ShardManager shardManager, BucketRouting routing) {
+        super("bucketTraffic");
+        this.trafficTracker = trafficTracker;
+        this.shardManager = shardManager;
+        this.routing = routing;
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> map, PrintWriter out) throws Exception {
+        final int top;
+        try {
+            top = param(map, "top").isEmpty() ? DEFAULT_TOP : Integer.parseInt(param(map, "top").get(0));
+        } catch (NumberFormatException e) {
+            throw new Exception("Invalid value for top: " + param(map, "top").get(0));
+        }
+        out.printf("skew: %.2f%n", trafficTracker.skew());
+        out.println("hot buckets:");
+        for (val bucket : trafficTracker.hotBuckets(top)) {
+            out.printf("bucket: %d shard: %s count: %d%n",
+                       bucket.getBucketId(), shardOf(bucket.getBucketId()), bucket.getCount());
+        }
+        out.println("hot keys:");
+        for (val key : trafficTracker.hotKeys(top)) {
+            out.printf("key: %s count: ~%d%n", key.getKey(), key.getEstimatedCount());
+        }
+        if (param(map, "reset").contains("true")) {
+            trafficTracker.reset();
+            log.info("Bucket traffic counters reset");
+        }
+    }
+
+    private String shardOf(int bucketId) {
+        final int movedTo = routing.bucketMap().shardFor(bucketId);
+        if (movedTo >= 0) {
+            return movedTo + " (moved)";
+        }
+        try {
+            return String.valueOf(shardManager.shardForBucket(bucketId));
+        } catch (ShardBlacklistedException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static List<String> param(Map<String, List<String>> params, String name) {
+        return params.getOrDefault(name, Collections.emptyList());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.aggregation;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import lombok.Value;
+
+/**
+ * An aggregate to be computed over rows on all shards. Use the static factory methods to create one.
+ */
+@Value
+public class Aggregation {
+    AggregationType type;
+    String property;
+
+    private Aggregation(AggregationType type, String property) {
+        Preconditions.checkArgument(type == AggregationType.COUNT || !Strings.isNullOrEmpty(property),
+                                    "Property is needed for " + type);
+        this.type = type;
+        this.property = property;
+    }
+
+    public static Aggregation sum(String property) {
+        return new Aggregation(AggregationType.SUM, property);
+    }
+
+    public static Aggregation min(String property) {
+        return new Aggregation(AggregationType.MIN, property);
+    }
+
+    public static Aggregation max(String property) {
+        return new Aggregation(AggregationType.MAX, property);
+    }
+
+    public static Aggregation avg(String property) {
+        return new Aggregation(AggregationType.AVG, property);
+    }
+
+    public static Aggregation count() {
+        return new Aggregation(AggregationType.COUNT, null);
+    }
+
+    public static Aggregation countDistinct(String property) {
+        return new Aggregation(AggregationType.COUNT_DISTINCT, property);
+    }
+
+    public static Aggregation groupBy(String property) {
+        return new Aggregation(AggregationType.GROUP_BY, property);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.aggregation;
+
+import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.utils.CriteriaUtils;
+import lombok.val;
+import org.hibernate.Session;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a set of {@link Aggregation}s into partial aggregates that can be computed on every shard and merges the
+ * partials returned by the shards into the final result.
+ * <ul>
+ * <li>SUM, MIN, MAX and COUNT are computed on the shards and combined.</li>
+ * <li>AVG is computed on the shards as sum and count of non null values and divided after merging.</li>
+ * <li>COUNT_DISTINCT runs a separate grouped query per shard so that only distinct values reach the caller.
+ * Values present on more than one shard are counted once. The count is exact, so every distinct value is held in
+ * memory while merging. A shard may return at most {@code maxDistinctValues} distinct values per COUNT_DISTINCT
+ * (counted across all groups), and a group may have at most as many after merging. Queries over more values fail
+ * with an {@link IllegalStateException}; narrow the criteria or group by a coarser property instead.</li>
+ * </ul>
+ * The merged result has one row per group (or a single row if there is no GROUP_BY), with one column per
+ * aggregation in the order the aggregations were provided.
+ */
+public class AggregationQuery {
+    public static final int DEFAULT_MAX_DISTINCT_VALUES = 10_000;
+
+    private final List<Aggregation> aggregations;
+    private final List<Aggregation> groupBys;
+    private final List<Aggregation> distinctCounts;
+    private final int maxDistinctValues;
+
+    public AggregationQuery(List<Aggregation> aggregations) {
+        this(aggregations, DEFAULT_MAX_DISTINCT_VALUES);
+    }
+
+    public AggregationQuery(List<Aggregation> aggregations, int maxDistinctValues) {
+        Preconditions.checkArgument(null != aggregations && !aggregations.isEmpty(), "No aggregations provided");
+        Preconditions.checkArgument(maxDistinctValues > 0, "maxDistinctValues must be positive");
+        this.maxDistinctValues = maxDistinctValues;
+        this.aggregations = Collections.unmodifiableList(new ArrayList<>(aggregations));
+        this.groupBys = filter(aggregations, AggregationType.GROUP_BY);
+        this.distinctCounts = filter(aggregations, AggregationType.COUNT_DISTINCT);
+    }
+
+    /**
+     * Generates queries to be run on a shard. The first query computes the regular partial aggregates, the rest
+     * fetch distinct values for every COUNT_DISTINCT aggregation. The provided criteria is not modified.
+     *
+     * @param criteria Criteria selecting the rows to be aggregated. Must not have a projection set.
+     * @return Queries to be run on every shard, in order
+     */
+    public List<DetachedCriteria> shardQueries(DetachedCriteria criteria) {
+        val queries = new ArrayList<DetachedCriteria>(1 + distinctCounts.size());
+        val partials = groupProjection();
+        for (val aggregation : aggregations) {
+            switch (aggregation.getType()) {
+                case SUM:
+                    partials.add(Projections.sum(aggregation.getProperty()));
+                    break;
+                case MIN:
+                    partials.add(Projections.min(aggregation.getProperty()));
+                    break;
+                case MAX:
+                    partials.add(Projections.max(aggregation.getProperty()));
+                    break;
+                case AVG:
+                    partials.add(Projections.sum(aggregation.getProperty()));
+                    partials.add(Projections.count(aggregation.getProperty()));
+                    break;
+                case COUNT:
+                    partials.add(Projections.rowCount());
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (partials.getLength() == 0) {
+            //Only distinct counts were asked for, an empty projection would select nothing
+            partials.add(Projections.rowCount());
+        }
+        queries.add(CriteriaUtils.copy(criteria).setProjection(partials));
+        for (val distinctCount : distinctCounts) {
+            queries.add(CriteriaUtils.copy(criteria)
+                                .setProjection(groupProjection()
+                                                       .add(Projections.groupProperty(distinctCount.getProperty()))));
+        }
+        return queries;
+    }
+
+    /**
+     * Runs the queries from {@link #shardQueries(DetachedCriteria)} on a shard. Distinct value queries fetch one row
+     * more than the limit so that {@link #merge(List)} can tell when it was exceeded.
+     *
+     * @param session  Session for the shard
+     * @param criteria Criteria selecting the rows to be aggregated. Must not have a projection set.
+     * @return Rows returned by each query, in order
+     */
+    @SuppressWarnings("unchecked")
+    public List<List<Object>> run(Session session, DetachedCriteria criteria) {
+        val queries = shardQueries(criteria);
+        val results = new ArrayList<List<Object>>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            val executable = queries.get(i).getExecutableCriteria(session);
+            if (i > 0) {
+                executable.setMaxResults(maxDistinctValues + 1);
+            }
+            results.add((List<Object>) executable.list());
+        }
+        return results;
+    }
+
+    /**
+     * Merges results from all shards.
+     *
+     * @param shardResults For every shard, the rows returned by each of the queries from
+     *                     {@link #shardQueries(DetachedCriteria)}, in the same order
+     * @return Merged rows, one per group
+     */
+    public List<Object[]> merge(List<List<List<Object>>> shardResults) {
+        val groups = new LinkedHashMap<List<Object>, Accumulator>();
+        for (val shardResult : shardResults) {
+            for (val rawRow : shardResult.get(0)) {
+                val row = toRow(rawRow);
+                groups.computeIfAbsent(groupKey(row), key -> new Accumulator()).add(row);
+            }
+            for (int i = 0; i < distinctCounts.size(); i++) {
+                checkDistinctValues(i, shardResult.get(i + 1).size());
+                for (val rawRow : shardResult.get(i + 1)) {
+                    val row = toRow(rawRow);
+                    groups.computeIfAbsent(groupKey(row), key -> new Accumulator())
+                            .addDistinct(i, row[groupBys.size()]);
+                }
+            }
+        }
+        if (groups.isEmpty() && groupBys.isEmpty()) {
+            groups.put(Collections.emptyList(), new Accumulator());
+        }
+        return groups.entrySet()
+                .stream()
+                .map(entry -> entry.getValue().result(entry.getKey()))
+                .collect(Collectors.toList());
+    }
+
+    private void checkDistinctValues(int index, int count) {
+        Preconditions.checkState(count <= maxDistinctValues,
+                                 "More than %s distinct values of %s. Narrow the criteria to count them.",
+                                 maxDistinctValues, distinctCounts.get(index).getProperty());
+    }
+
+    private ProjectionList groupProjection() {
+        val projection = Projections.projectionList();
+        groupBys.forEach(groupBy -> projection.add(Projections.groupProperty(groupBy.getProperty())));
+        return projection;
+    }
+
+    private List<Object> groupKey(Object[] row) {
+        return Arrays.asList(Arrays.copyOf(row, groupBys.size()));
+    }
+
+    private static Object[] toRow(Object rawRow) {
+        return rawRow instanceof Object[] ? (Object[]) rawRow : new Object[]{rawRow};
+    }
+
+    private static List<Aggregation> filter(List<Aggregation> aggregations, AggregationType type) {
+        return aggregations.stream()
+                .filter(aggregation -> aggregation.getType() == type)
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object min(Object lhs, Object rhs) {
+        if (null == lhs || null == rhs) {
+            return null == lhs ? rhs : lhs;
+        }
+        return ((Comparable<Object>) lhs).compareTo(rhs) <= 0 ? lhs : rhs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object max(Object lhs, Object rhs) {
+        if (null == lhs || null == rhs) {
+            return null == lhs ? rhs : lhs;
+        }
+        return ((Comparable<Object>) lhs).compareTo(rhs) >= 0 ? lhs : rhs;
+    }
+
+    private static Number sum(Number lhs, Number rhs) {
+        if (null == lhs || null == rhs) {
+            return null == lhs ? rhs : lhs;
+        }
+        if (lhs instanceof BigDecimal || rhs instanceof BigDecimal) {
+            return toBigDecimal(lhs).add(toBigDecimal(rhs));
+        }
+        if (lhs instanceof BigInteger || rhs instanceof BigInteger) {
+            return toBigInteger(lhs).add(toBigInteger(rhs));
+        }
+        if (lhs instanceof Double || rhs instanceof Double || lhs instanceof Float || rhs instanceof Float) {
+            return lhs.doubleValue() + rhs.doubleValue();
+        }
+        return lhs.longValue() + rhs.longValue();
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(number.doubleValue());
+        }
+        return BigDecimal.valueOf(number.longValue());
+    }
+
+    private static BigInteger toBigInteger(Number number) {
+        return number instanceof BigInteger ? (BigInteger) number : BigInteger.valueOf(number.longValue());
+    }
+
+    /**
+     * Running merge of partials for one group.
+     */
+    private final class Accumulator {
+        private final Object[] values = new Object[aggregations.size()];
+        private final long[] counts = new long[aggregations.size()];
+        private final List<Set<Object>> distinctValues = new ArrayList<>(distinctCounts.size());
+
+        private Accumulator() {
+            for (int i = 0; i < distinctCounts.size(); i++) {
+                distinctValues.add(new HashSet<>());
+            }
+        }
+
+        void add(Object[] row) {
+            int column = groupBys.size();
+            for (int i = 0; i < aggregations.size(); i++) {
+                switch (aggregations.get(i).getType()) {
+                    case SUM:
+                        values[i] = sum((Number) values[i], (Number) row[column++]);
+                        break;
+                    case MIN:
+                        values[i] = min(values[i], row[column++]);
+                        break;
+                    case MAX:
+                        values[i] = max(values[i], row[column++]);
+                        break;
+                    case AVG:
+                        values[i] = sum((Number) values[i], (Number) row[column++]);
+                        counts[i] += ((Number) row[column++]).longValue();
+                        break;
+                    case COUNT:
+                        counts[i] += ((Number) row[column++]).longValue();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        void addDistinct(int index, Object value) {
+            if (null != value && distinctValues.get(index).add(value)) {
+                checkDistinctValues(index, distinctValues.get(index).size());
+            }
+        }
+
+        Object[] result(List<Object> groupKey) {
+            val result = new Object[aggregations.size()];
+            int groupIndex = 0;
+            int distinctIndex = 0;
+            for (int i = 0; i < aggregations.size(); i++) {
+                switch (aggregations.get(i).getType()) {
+                    case GROUP_BY:
+                        result[i] = groupKey.get(groupIndex++);
+                        break;
+                    case COUNT_DISTINCT:
+                        result[i] = (long) distinctValues.get(distinctIndex++).size();
+                        break;
+                    case COUNT:
+                        result[i] = counts[i];
+                        break;
+                    case AVG:
+                        result[i] = counts[i] == 0
+                                ? null
+                                : ((Number) values[i]).doubleValue() / counts[i];
+                        break;
+                    default:
+                        result[i] = values[i];
+                        break;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.appform.dropwizard.sharding.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Limits the number of concurrent transactions on every shard, so that a degraded shard cannot hold up all caller
+ * threads. Calls beyond the limit wait for up to maxWaitMs and then fail with
+ * {@link io.appform.dropwizard.sharding.exceptions.ShardBulkheadFullException}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkheadConfig {
+
+    @Min(1)
+    @Builder.Default
+    private int maxConcurrentCallsPerShard = 64;
+
+    @Min(0)
+    private long maxWaitMs;
+}
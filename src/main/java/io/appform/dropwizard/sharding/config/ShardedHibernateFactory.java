@@ -36,6 +36,7 @@ import java.util.List;
  * <li>shards : This holds shards information, number of shards is set to 2 by default. This can be changed by passing -Ddb.shards=[n] on the command line.</li>
  * <li>blacklist : This is used to blacklist certain shard while booting up bundle.</li>
  * <li>shardingOptions : This can be used to set certain settings in db-bundle like skipTransactionOnRead etc.</li>
+ * <li>shardWeights : Relative capacity of every shard, in order. Used by WeightedDBShardingBundle to assign buckets in proportion to the weights.</li>
  * </ul>}
  */
 @Data
@@ -57,4 +58,9 @@ public class ShardedHibernateFactory {
 
     @Valid
     private MetricConfig metricConfig;
+
+    @Valid
+    private BulkheadConfig bulkheadConfig;
+
+    private List<Integer> shardWeights;
 }
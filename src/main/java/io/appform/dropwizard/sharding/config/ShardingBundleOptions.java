@@ -5,10 +5,63 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * {@summary Tunables for the bundle.
+ * <ul>
+ * <li>skipReadOnlyTransaction : Skip opening a transaction for read only contexts.</li>
+ * <li>scatterGatherParallelism : Max number of shard queries run concurrently by scatter-gather calls.
+ * Defaults to the number of shards.</li>
+ * <li>scatterGatherQueueSize : Max number of shard queries waiting for a scatter-gather thread. Calls beyond this
+ * are rejected. Defaults to 1024.</li>
+ * <li>scatterGatherShardTimeoutMs : Time a scatter-gather call waits for every shard to respond. 0 waits forever.</li>
+ * <li>streamFetchSize : JDBC fetch size used by streaming scatter-gather calls. Driver default is used if not set.</li>
+ * <li>multiGetChunkSize : Max number of keys in a single IN query for multi key gets. Defaults to 500.</li>
+ * <li>asyncParallelismPerShard : Number of threads per shard used to run async DAO calls. Defaults to
+ * {@link #DEFAULT_ASYNC_PARALLELISM_PER_SHARD}.</li>
+ * <li>asyncQueueSizePerShard : Max number of async DAO calls waiting for a thread on a shard. Calls beyond this
+ * fail with a {@link java.util.concurrent.RejectedExecutionException}. Defaults to
+ * {@link #DEFAULT_ASYNC_QUEUE_SIZE_PER_SHARD}.</li>
+ * <li>hotKeySampleRate : One in these many routed keys is tracked for hot key detection. Defaults to 64.</li>
+ * <li>hotKeyReportSize : Number of hot buckets and keys published as metrics. Defaults to 10.</li>
+ * <li>saveAllBatchSize : JDBC batch size for saveAll calls. Relational daos flush and clear the session after every
+ * batch, lookup daos save every batch in it's own transaction. Defaults to 100.</li>
+ * <li>maxDistinctValues : Max number of distinct values a shard may return for a countDistinct aggregation. Larger
+ * counts fail instead of being held in memory. Defaults to 10000.</li>
+ * </ul>}
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class ShardingBundleOptions {
+    public static final int DEFAULT_ASYNC_PARALLELISM_PER_SHARD = 8;
+    public static final int DEFAULT_ASYNC_QUEUE_SIZE_PER_SHARD = 1024;
+
     private boolean skipReadOnlyTransaction = false;
+
+    private int scatterGatherParallelism;
+
+    private int scatterGatherQueueSize;
+
+    private long scatterGatherShardTimeoutMs;
+
+    private int streamFetchSize;
+
+    private int multiGetChunkSize;
+
+    private int asyncParallelismPerShard;
+
+    private int asyncQueueSizePerShard;
+
+    private int hotKeySampleRate;
+
+    private int hotKeyReportSize;
+
+    private int saveAllBatchSize;
+
+    private int maxDistinctValues;
+
+    public ShardingBundleOptions(boolean skipReadOnlyTransaction) {
+        this.skipReadOnlyTransaction = skipReadOnlyTransaction;
+    }
 }
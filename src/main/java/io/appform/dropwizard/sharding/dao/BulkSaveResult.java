@@ -0,0 +1,39 @@
+package io.appform.dropwizard.sharding.dao;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of saving elements across shards with {@link LookupDao#saveAll(java.util.Collection)}.
+ */
+@Value
+public class BulkSaveResult {
+
+    /**
+     * Number of elements saved on every shard that was written to
+     */
+    Map<Integer, Integer> savedByShard;
+
+    /**
+     * First error seen on every shard on which any batch failed
+     */
+    Map<Integer, Throwable> failedShards;
+
+    /**
+     * Keys of elements that were not saved
+     */
+    List<String> failedKeys;
+
+    public int getSavedCount() {
+        return savedByShard.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * @return true if every element was saved
+     */
+    public boolean isComplete() {
+        return failedKeys.isEmpty();
+    }
+}
@@ -21,6 +21,8 @@ import io.appform.dropwizard.sharding.ShardInfoProvider;
 import io.appform.dropwizard.sharding.caching.LookupCache;
 import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
 import io.appform.dropwizard.sharding.exceptions.DaoFwdException;
+import io.appform.dropwizard.sharding.execution.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.execution.ShardExecutors;
 import io.appform.dropwizard.sharding.observers.TransactionObserver;
 import io.appform.dropwizard.sharding.sharding.LookupKey;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
@@ -55,6 +57,33 @@ public class CacheableLookupDao<T> extends LookupDao<T> {
         this.cache = cache;
     }
 
+    public CacheableLookupDao(List<SessionFactory> sessionFactories,
+                              Class<T> entityClass,
+                              ShardCalculator<String> shardCalculator,
+                              LookupCache<T> cache,
+                              ShardingBundleOptions shardingOptions,
+                              ShardInfoProvider shardInfoProvider,
+                              TransactionObserver observer,
+                              ScatterGatherExecutor scatterGatherExecutor) {
+        super(sessionFactories, entityClass, shardCalculator, shardingOptions, shardInfoProvider, observer,
+                scatterGatherExecutor);
+        this.cache = cache;
+    }
+
+    public CacheableLookupDao(List<SessionFactory> sessionFactories,
+                              Class<T> entityClass,
+                              ShardCalculator<String> shardCalculator,
+                              LookupCache<T> cache,
+                              ShardingBundleOptions shardingOptions,
+                              ShardInfoProvider shardInfoProvider,
+                              TransactionObserver observer,
+                              ScatterGatherExecutor scatterGatherExecutor,
+                              ShardExecutors shardExecutors) {
+        super(sessionFactories, entityClass, shardCalculator, shardingOptions, shardInfoProvider, observer,
+                scatterGatherExecutor, shardExecutors);
+        this.cache = cache;
+    }
+
     /**
      * Read through an object on the basis of key (value of field annotated with {@link LookupKey}) from cache.
      * Cache miss will be delegated to {@link LookupDao#get(String)} method.
@@ -19,6 +19,9 @@ package io.appform.dropwizard.sharding.dao;
 
 import io.appform.dropwizard.sharding.ShardInfoProvider;
 import io.appform.dropwizard.sharding.caching.RelationalCache;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.appform.dropwizard.sharding.execution.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.execution.ShardExecutors;
 import io.appform.dropwizard.sharding.observers.TransactionObserver;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import org.hibernate.SessionFactory;
@@ -43,6 +46,31 @@ public class CacheableRelationalDao<T> extends RelationalDao<T> {
         this.cache = cache;
     }
 
+    public CacheableRelationalDao(List<SessionFactory> sessionFactories, Class<T> entityClass,
+                                  ShardCalculator<String> shardCalculator,
+                                  RelationalCache<T> cache,
+                                  ShardingBundleOptions shardingOptions,
+                                  ShardInfoProvider shardInfoProvider,
+                                  TransactionObserver observer,
+                                  ScatterGatherExecutor scatterGatherExecutor) {
+        super(sessionFactories, entityClass, shardCalculator, shardingOptions, shardInfoProvider, observer,
+              scatterGatherExecutor);
+        this.cache = cache;
+    }
+
+    public CacheableRelationalDao(List<SessionFactory> sessionFactories, Class<T> entityClass,
+                                  ShardCalculator<String> shardCalculator,
+                                  RelationalCache<T> cache,
+                                  ShardingBundleOptions shardingOptions,
+                                  ShardInfoProvider shardInfoProvider,
+                                  TransactionObserver observer,
+                                  ScatterGatherExecutor scatterGatherExecutor,
+                                  ShardExecutors shardExecutors) {
+        super(sessionFactories, entityClass, shardCalculator, shardingOptions, shardInfoProvider, observer,
+              scatterGatherExecutor, shardExecutors);
+        this.cache = cache;
+    }
+
     @Override
     public Optional<T> get(String parentKey, Object key) {
         if (cache.exists(parentKey, key)) {
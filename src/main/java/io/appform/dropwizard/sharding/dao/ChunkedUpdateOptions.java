@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.function.Consumer;
+
+/**
+ * Tuning for {@link RelationalDao#updateInChunks(String, org.hibernate.criterion.DetachedCriteria,
+ * java.util.function.Function, ChunkedUpdateOptions)}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkedUpdateOptions {
+    /**
+     * Number of rows updated between two flushes of the session. Also the number of rows per transaction when
+     * committing per chunk.
+     */
+    @Builder.Default
+    private int chunkSize = 500;
+
+    /**
+     * JDBC fetch size used to scroll through the rows. Driver default is used if not positive.
+     */
+    @Builder.Default
+    private int fetchSize = 500;
+
+    /**
+     * Commit every chunk in it's own transaction. A failure then only rolls back the chunk being updated, and the
+     * update can be resumed from the last checkpoint.
+     */
+    private boolean commitPerChunk;
+
+    /**
+     * Checkpoint from an earlier run to resume after. Rows up to and including the checkpoint are skipped.
+     */
+    private String checkpoint;
+
+    /**
+     * Called with the checkpoint after every chunk is committed. Persist it to resume the update after a failure.
+     */
+    private Consumer<String> checkpointListener;
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Outcome of {@link RelationalDao#updateInChunks(String, org.hibernate.criterion.DetachedCriteria,
+ * java.util.function.Function, ChunkedUpdateOptions)}.
+ */
+@Value
+@Builder
+public class ChunkedUpdateResult {
+    /**
+     * Rows updated in this run
+     */
+    long updatedRows;
+    /**
+     * Chunks flushed in this run
+     */
+    int chunks;
+    /**
+     * Checkpoint after the last updated row. Same as the checkpoint passed in if no row was updated.
+     */
+    String checkpoint;
+    /**
+     * False if the updater stopped the run by returning null
+     */
+    boolean completed;
+}
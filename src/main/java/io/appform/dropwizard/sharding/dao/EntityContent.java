@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.dao;
+
+import lombok.val;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Compares the persistent state of two instances of an entity, loaded from different shards. Collections are not
+ * compared, associations are compared by id.
+ */
+final class EntityContent {
+
+    private EntityContent() {
+    }
+
+    static boolean same(SessionFactory sessionFactory, Object left, Object right) {
+        if (null == left || null == right) {
+            return left == right;
+        }
+        val leftClass = Hibernate.getClass(left);
+        if (!leftClass.equals(Hibernate.getClass(right))) {
+            return false;
+        }
+        val factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+        val persister = factory.getMetamodel().entityPersister(leftClass);
+        val leftId = persister.getIdentifier(left, (SharedSessionContractImplementor) null);
+        val rightId = persister.getIdentifier(right, (SharedSessionContractImplementor) null);
+        if (!persister.getIdentifierType().isEqual(leftId, rightId, factory)) {
+            return false;
+        }
+        val types = persister.getPropertyTypes();
+        val leftValues = persister.getPropertyValues(left);
+        val rightValues = persister.getPropertyValues(right);
+        for (int i = 0; i < types.length; i++) {
+            if (!types[i].isCollectionType() && !types[i].isEqual(leftValues[i], rightValues[i], factory)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
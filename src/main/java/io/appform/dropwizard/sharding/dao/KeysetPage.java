@@ -0,0 +1,20 @@
+package io.appform.dropwizard.sharding.dao;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A page of results returned by keyset (cursor) based pagination.
+ */
+@Value
+public class KeysetPage<T> {
+
+    List<T> items;
+
+    /**
+     * Opaque token to fetch the next page. Null if there are no more results.
+     */
+    String nextPageToken;
+
+}
@@ -0,0 +1,24 @@
+package io.appform.dropwizard.sharding.dao;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Request for a page of results using keyset (cursor) based pagination.
+ * The first page is requested without a token, subsequent pages pass the token returned in the previous
+ * {@link KeysetPage}. Sort property must be a non-null property declared directly on the entity.
+ */
+@Data
+@Builder
+public class KeysetPageRequest {
+
+    private String sortProperty;
+
+    @Builder.Default
+    private boolean ascending = true;
+
+    private String pageToken;
+
+    private int pageSize;
+
+}
@@ -0,0 +1,80 @@
+package io.appform.dropwizard.sharding.dao;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contents of the opaque token used for keyset pagination. Holds the last seen (sort key, id) pair for every shard
+ * and the shards that have no more rows to offer. Serialized as base64 encoded json. Dates and java.time values are
+ * written as ISO strings and decimals are read back as {@link java.math.BigDecimal}, so positions survive the round
+ * trip without losing precision.
+ */
+@Data
+@NoArgsConstructor
+class KeysetPageToken {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    @JsonProperty("p")
+    private String sortProperty;
+
+    @JsonProperty("a")
+    private boolean ascending;
+
+    @JsonProperty("s")
+    private Map<Integer, List<Object>> positions = new HashMap<>();
+
+    @JsonProperty("e")
+    private Set<Integer> exhaustedShards = new HashSet<>();
+
+    KeysetPageToken(String sortProperty, boolean ascending) {
+        this.sortProperty = sortProperty;
+        this.ascending = ascending;
+    }
+
+    KeysetPageToken next() {
+        final KeysetPageToken next = new KeysetPageToken(sortProperty, ascending);
+        next.positions.putAll(positions);
+        next.exhaustedShards.addAll(exhaustedShards);
+        return next;
+    }
+
+    boolean matches(String sortProperty, boolean ascending) {
+        return this.sortProperty.equals(sortProperty) && this.ascending == ascending;
+    }
+
+    <V> V value(Object raw, Class<V> type) {
+        return MAPPER.convertValue(raw, type);
+    }
+
+    String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not generate page token", e);
+        }
+    }
+
+    static KeysetPageToken decode(String token) {
+        try {
+            return MAPPER.readValue(Base64.getUrlDecoder().decode(token), KeysetPageToken.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+    }
+}
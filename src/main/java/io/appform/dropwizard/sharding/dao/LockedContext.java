@@ -2,6 +2,7 @@ package io.appform.dropwizard.sharding.dao;
 
 import com.google.common.collect.Lists;
 import io.appform.dropwizard.sharding.ShardInfoProvider;
+import io.appform.dropwizard.sharding.execution.ShardExecutors;
 import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
 import io.appform.dropwizard.sharding.observers.TransactionObserver;
 import io.appform.dropwizard.sharding.utils.TransactionHandler;
@@ -10,6 +11,9 @@ import org.hibernate.SessionFactory;
 import org.hibernate.criterion.DetachedCriteria;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -33,6 +37,7 @@ public class LockedContext<T> {
     private final Mode mode;
     private final TransactionExecutionContext executionContext;
     private final TransactionObserver observer;
+    private final Executor asyncExecutor;
 
     public LockedContext(
             int shardId,
@@ -41,10 +46,22 @@ public class LockedContext<T> {
             Class<T> entityClass,
             ShardInfoProvider shardInfoProvider,
             TransactionObserver observer) {
+        this(shardId, sessionFactory, getter, entityClass, shardInfoProvider, observer, null);
+    }
+
+    public LockedContext(
+            int shardId,
+            SessionFactory sessionFactory,
+            Supplier<T> getter,
+            Class<T> entityClass,
+            ShardInfoProvider shardInfoProvider,
+            TransactionObserver observer,
+            Executor asyncExecutor) {
         this.shardId = shardId;
         this.sessionFactory = sessionFactory;
         this.getter = getter;
         this.observer = observer;
+        this.asyncExecutor = asyncExecutor;
         this.mode = Mode.READ;
         this.executionContext = buildExecutionContext(shardInfoProvider, entityClass);
     }
@@ -57,11 +74,24 @@ public class LockedContext<T> {
             Class<T> entityClass,
             ShardInfoProvider shardInfoProvider,
             TransactionObserver observer) {
+        this(shardId, sessionFactory, saver, entity, entityClass, shardInfoProvider, observer, null);
+    }
+
+    public LockedContext(
+            int shardId,
+            SessionFactory sessionFactory,
+            Function<T, T> saver,
+            T entity,
+            Class<T> entityClass,
+            ShardInfoProvider shardInfoProvider,
+            TransactionObserver observer,
+            Executor asyncExecutor) {
         this.shardId = shardId;
         this.sessionFactory = sessionFactory;
         this.saver = saver;
         this.entity = entity;
         this.observer = observer;
+        this.asyncExecutor = asyncExecutor;
         this.mode = Mode.INSERT;
         this.executionContext = buildExecutionContext(shardInfoProvider, entityClass);
     }
@@ -94,9 +124,7 @@ public class LockedContext<T> {
         return apply(parent -> {
             try {
                 List<U> entities = entityGenerator.apply(parent);
-                for (U entity : entities) {
-                    relationalDao.save(this, entity);
-                }
+                relationalDao.saveAll(this, entities);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -201,6 +229,32 @@ public class LockedContext<T> {
         });
     }
 
+    /**
+     * Runs {@link #execute()} on the executor of the shard this context belongs to.
+     *
+     * @return Future for the parent entity, completed exceptionally if any operation fails
+     */
+    public CompletableFuture<T> executeAsync() {
+        if (null == asyncExecutor) {
+            return ShardExecutors.failedFuture(new IllegalStateException("No executor available for async execution"));
+        }
+        return executeAsync(asyncExecutor);
+    }
+
+    /**
+     * Runs {@link #execute()} on the provided executor.
+     *
+     * @param executor Executor to run the transaction on
+     * @return Future for the parent entity, completed exceptionally if any operation fails
+     */
+    public CompletableFuture<T> executeAsync(Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(this::execute, executor);
+        } catch (RejectedExecutionException e) {
+            return ShardExecutors.failedFuture(e);
+        }
+    }
+
     private TransactionExecutionContext buildExecutionContext(final ShardInfoProvider shardInfoProvider,
                                                               final Class<T> entityClass) {
         return TransactionExecutionContext.builder()
@@ -18,42 +18,85 @@
 package io.appform.dropwizard.sharding.dao;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
 import io.appform.dropwizard.sharding.ShardInfoProvider;
+import io.appform.dropwizard.sharding.aggregation.Aggregation;
+import io.appform.dropwizard.sharding.aggregation.AggregationQuery;
 import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.appform.dropwizard.sharding.execution.PartialResult;
 import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
+import io.appform.dropwizard.sharding.execution.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.execution.ShardExecutors;
 import io.appform.dropwizard.sharding.execution.TransactionExecutor;
+import io.appform.dropwizard.sharding.migration.BucketMigrationOptions;
+import io.appform.dropwizard.sharding.migration.BucketMigrationResult;
+import io.appform.dropwizard.sharding.migration.RelatedRows;
 import io.appform.dropwizard.sharding.observers.TransactionObserver;
+import io.appform.dropwizard.sharding.sharding.BucketMap;
+import io.appform.dropwizard.sharding.sharding.BucketMove;
 import io.appform.dropwizard.sharding.sharding.LookupKey;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.appform.dropwizard.sharding.utils.CriteriaUtils;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import io.appform.dropwizard.sharding.utils.TransactionHandler;
 import io.dropwizard.hibernate.AbstractDAO;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import lombok.var;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
+import org.hibernate.Criteria;
 import org.hibernate.LockMode;
+import org.hibernate.ReplicationMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLDeleteAll;
+import org.hibernate.annotations.Where;
+import org.hibernate.cfg.beanvalidation.BeanValidationEventListener;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.engine.spi.CascadingActions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.event.internal.DefaultDeleteEventListener;
+import org.hibernate.event.internal.PostDeleteEventListenerStandardImpl;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.jpa.event.spi.CallbackType;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.hibernate.query.Query;
+import org.hibernate.type.CollectionType;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * A dao to manage lookup and top level elements in the system. Can save and retrieve an object (tree) from any shard.
@@ -71,10 +114,12 @@ public class LookupDao<T> implements ShardedDao<T> {
     private final class LookupDaoPriv extends AbstractDAO<T> {
 
         private final SessionFactory sessionFactory;
+        private final Supplier<Boolean> directDelete;
 
         public LookupDaoPriv(SessionFactory sessionFactory) {
             super(sessionFactory);
             this.sessionFactory = sessionFactory;
+            this.directDelete = Suppliers.memoize(() -> canDeleteDirectly(sessionFactory));
         }
 
         /**
@@ -114,6 +159,28 @@ public class LookupDao<T> implements ShardedDao<T> {
             return persist(entity);
         }
 
+        /**
+         * Inserts elements in the current transaction, sending the inserts to the database in JDBC batches of
+         * saveAllBatchSize. The session is flushed and cleared after every batch. Unlike {@link #save(Object)},
+         * elements are not looked up first, so existing elements fail the transaction.
+         */
+        int saveAll(List<T> entities) {
+            val session = currentSession();
+            val batchSize = saveAllBatchSize();
+            val previousBatchSize = session.getJdbcBatchSize();
+            session.setJdbcBatchSize(batchSize);
+            try {
+                for (List<T> batch : Lists.partition(entities, batchSize)) {
+                    batch.forEach(session::persist);
+                    session.flush();
+                    session.clear();
+                }
+            } finally {
+                session.setJdbcBatchSize(previousBatchSize);
+            }
+            return entities.size();
+        }
+
         void update(T entity) {
             currentSession().evict(entity); //Detach .. otherwise update is a no-op
             currentSession().update(entity);
@@ -129,16 +196,48 @@ public class LookupDao<T> implements ShardedDao<T> {
             return list(criteria.getExecutableCriteria(currentSession()));
         }
 
+        /**
+         * Fetch elements for the provided keys, querying at most multiGetChunkSize keys at a time.
+         *
+         * @param keys lookup keys, all of which belong to this shard
+         * @return List of elements found
+         */
+        List<T> getAll(List<String> keys) {
+            return Lists.partition(keys, multiGetChunkSize())
+                    .stream()
+                    .flatMap(chunk -> select(DetachedCriteria.forClass(entityClass)
+                                                     .add(Restrictions.in(keyField.getName(), chunk))).stream())
+                    .collect(Collectors.toList());
+        }
+
+        ScrollableResults scroll(ScrollParamPriv scrollParam) {
+            final Criteria criteria = scrollParam.criteria.getExecutableCriteria(currentSession());
+            if (scrollParam.fetchSize > 0) {
+                criteria.setFetchSize(scrollParam.fetchSize);
+            }
+            return criteria.scroll(ScrollMode.FORWARD_ONLY);
+        }
+
         long count(DetachedCriteria criteria) {
             return (long) criteria.getExecutableCriteria(currentSession())
                     .setProjection(Projections.rowCount())
                     .uniqueResult();
         }
 
+        List<List<Object>> aggregate(AggregationQuery query, DetachedCriteria criteria) {
+            return query.run(currentSession(), criteria);
+        }
+
         /**
          * Delete an object
          */
         boolean delete(String id) {
+            if (directDelete.get()) {
+                return currentSession()
+                        .createQuery("delete from " + entityClass.getName() + " where " + keyField.getName() + " = :key")
+                        .setParameter("key", id)
+                        .executeUpdate() > 0;
+            }
             return Optional.ofNullable(getLocked(id, LockMode.UPGRADE_NOWAIT))
                     .map(object -> {
                         currentSession().delete(object);
@@ -148,6 +247,67 @@ public class LookupDao<T> implements ShardedDao<T> {
 
         }
 
+        /**
+         * Scan the lookup keys on this shard and return the ones that belong to the bucket. Buckets are computed from
+         * the key and cannot be selected in the database, so this reads the key column of every row on the shard.
+         */
+        List<String> bucketKeys(int bucketId) {
+            val keys = new ArrayList<String>();
+            val results = currentSession()
+                    .createCriteria(entityClass)
+                    .setProjection(Projections.property(keyField.getName()))
+                    .setFetchSize(multiGetChunkSize())
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (results.next()) {
+                    val key = (String) results.get(0);
+                    if (null != key && shardCalculator.bucketId(key) == bucketId) {
+                        keys.add(key);
+                    }
+                }
+            } finally {
+                results.close();
+            }
+            return keys;
+        }
+
+        T evict(T entity) {
+            currentSession().evict(entity);
+            return entity;
+        }
+
+        /**
+         * Copy elements read from another shard, keeping their ids. Elements already present are left untouched.
+         */
+        int copyIn(List<T> entities) {
+            entities.forEach(entity -> currentSession().replicate(entity, ReplicationMode.IGNORE));
+            return entities.size();
+        }
+
+        /**
+         * Copy an element read from another shard, keeping it's id. Overwrites the element if present.
+         */
+        boolean overwrite(T entity) {
+            currentSession().replicate(entity, ReplicationMode.OVERWRITE);
+            return true;
+        }
+
+        int deleteAll(List<String> keys) {
+            if (directDelete.get()) {
+                return Lists.partition(keys, multiGetChunkSize())
+                        .stream()
+                        .mapToInt(chunk -> currentSession()
+                                .createQuery("delete from " + entityClass.getName()
+                                                     + " where " + keyField.getName() + " in (:keys)")
+                                .setParameterList("keys", chunk)
+                                .executeUpdate())
+                        .sum();
+            }
+            val entities = getAll(keys);
+            entities.forEach(entity -> currentSession().delete(entity));
+            return entities.size();
+        }
+
         public int update(final UpdateOperationMeta updateOperationMeta) {
             Query query = currentSession().createNamedQuery(updateOperationMeta.getQueryName());
             updateOperationMeta.getParams().forEach(query::setParameter);
@@ -155,6 +315,32 @@ public class LookupDao<T> implements ShardedDao<T> {
         }
     }
 
+    @Builder
+    private static class ScrollParamPriv {
+        DetachedCriteria criteria;
+        int fetchSize;
+    }
+
+    /**
+     * Outcome of {@link #saveAll(Collection)} on one shard.
+     */
+    private static final class ShardSaveOutcome {
+        private int saved;
+        private final List<String> failedKeys = new ArrayList<>();
+        private Throwable error;
+
+        private void failed(Collection<String> keys, Throwable t) {
+            failedKeys.addAll(keys);
+            if (null == error) {
+                error = t;
+            }
+        }
+    }
+
+    private static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 500;
+    private static final int DEFAULT_SAVE_ALL_BATCH_SIZE = 100;
+    private static final String PRE_REMOVE_VALIDATION_GROUP = "javax.persistence.validation.group.pre-remove";
+
     private List<LookupDaoPriv> daos;
     private final Class<T> entityClass;
 
@@ -165,6 +351,8 @@ public class LookupDao<T> implements ShardedDao<T> {
     private final Field keyField;
 
     private final TransactionExecutor transactionExecutor;
+    private final ScatterGatherExecutor scatterGatherExecutor;
+    private final ShardExecutors shardExecutors;
 
     private final ShardInfoProvider shardInfoProvider;
     private final TransactionObserver observer;
@@ -182,6 +370,57 @@ public class LookupDao<T> implements ShardedDao<T> {
             ShardingBundleOptions shardingOptions,
             final ShardInfoProvider shardInfoProvider,
             final TransactionObserver observer) {
+        this(sessionFactories,
+                entityClass,
+                shardCalculator,
+                shardingOptions,
+                shardInfoProvider,
+                observer,
+                ScatterGatherExecutor.create(shardingOptions, sessionFactories.size()));
+    }
+
+    /**
+     * Creates a new sharded DAO. The number of managed shards and bucketing is controlled by the {@link ShardManager}.
+     *
+     * @param sessionFactories      a session provider for each shard
+     * @param shardCalculator       calculator for shards
+     * @param scatterGatherExecutor executor used to fan out queries to all shards
+     */
+    public LookupDao(
+            List<SessionFactory> sessionFactories,
+            Class<T> entityClass,
+            ShardCalculator<String> shardCalculator,
+            ShardingBundleOptions shardingOptions,
+            final ShardInfoProvider shardInfoProvider,
+            final TransactionObserver observer,
+            final ScatterGatherExecutor scatterGatherExecutor) {
+        this(sessionFactories,
+                entityClass,
+                shardCalculator,
+                shardingOptions,
+                shardInfoProvider,
+                observer,
+                scatterGatherExecutor,
+                ShardExecutors.create(shardingOptions, sessionFactories.size()));
+    }
+
+    /**
+     * Creates a new sharded DAO. The number of managed shards and bucketing is controlled by the {@link ShardManager}.
+     *
+     * @param sessionFactories      a session provider for each shard
+     * @param shardCalculator       calculator for shards
+     * @param scatterGatherExecutor executor used to fan out queries to all shards
+     * @param shardExecutors        executors used to run async calls on shards
+     */
+    public LookupDao(
+            List<SessionFactory> sessionFactories,
+            Class<T> entityClass,
+            ShardCalculator<String> shardCalculator,
+            ShardingBundleOptions shardingOptions,
+            final ShardInfoProvider shardInfoProvider,
+            final TransactionObserver observer,
+            final ScatterGatherExecutor scatterGatherExecutor,
+            final ShardExecutors shardExecutors) {
         this.daos = sessionFactories.stream().map(LookupDaoPriv::new).collect(Collectors.toList());
         this.entityClass = entityClass;
         this.shardCalculator = shardCalculator;
@@ -189,6 +428,8 @@ public class LookupDao<T> implements ShardedDao<T> {
         this.shardInfoProvider = shardInfoProvider;
         this.observer = observer;
         this.transactionExecutor = new TransactionExecutor(shardInfoProvider, getClass(), entityClass, observer);
+        this.scatterGatherExecutor = scatterGatherExecutor;
+        this.shardExecutors = shardExecutors;
 
         Field fields[] = FieldUtils.getFieldsWithAnnotation(entityClass, LookupKey.class);
         Preconditions.checkArgument(fields.length != 0, "At least one field needs to be sharding key");
@@ -231,10 +472,7 @@ public class LookupDao<T> implements ShardedDao<T> {
      * @throws Exception if backing dao throws
      */
     public <U> U get(String key, Function<T, U> handler) throws Exception {
-        int shardId = shardCalculator.shardId(key);
-        LookupDaoPriv dao = daos.get(shardId);
-        return transactionExecutor.execute(dao.sessionFactory, true, dao::get, key, handler, "get",
-                shardId);
+        return get(key, shardCalculator.shardId(key), handler);
     }
 
     /**
@@ -248,6 +486,12 @@ public class LookupDao<T> implements ShardedDao<T> {
         return get(key).isPresent();
     }
 
+    private <U> U get(String key, int shardId, Function<T, U> handler) throws Exception {
+        LookupDaoPriv dao = daos.get(shardId);
+        return transactionExecutor.execute(dao.sessionFactory, true, dao::get, key, handler, "get",
+                shardId);
+    }
+
     /**
      * Saves an entity on proper shard based on hash of the value in the key field in the object.
      * The updated entity is returned. If Cascade is specified, this can be used
@@ -275,30 +519,101 @@ public class LookupDao<T> implements ShardedDao<T> {
      */
     public <U> U save(T entity, Function<T, U> handler) throws Exception {
         final String key = keyField.get(entity).toString();
-        int shardId = shardCalculator.shardId(key);
-        log.debug("Saving entity of type {} with key {} to shard {}", entityClass.getSimpleName(), key, shardId);
-        LookupDaoPriv dao = daos.get(shardId);
-        return transactionExecutor.execute(dao.sessionFactory, false, dao::save, entity, handler,
-                "save", shardId);
+        return write(key, shardId -> {
+            log.debug("Saving entity of type {} with key {} to shard {}", entityClass.getSimpleName(), key, shardId);
+            LookupDaoPriv dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, false, dao::save, entity, handler,
+                    "save", shardId);
+        });
+    }
+
+    /**
+     * Saves elements on the shards of their keys (values of fields annotated with {@link LookupKey}). Elements are
+     * grouped by shard and every shard is written to in parallel on it's own executor, in transactions of
+     * saveAllBatchSize elements each. A batch that fails is rolled back and reported, other batches and shards are not
+     * affected. Elements are inserted without being looked up, so a batch holding a key that already exists fails,
+     * use {@link #save(Object)} to overwrite. Elements in buckets that are being moved are saved one at a time, so
+     * that they reach both shards.
+     *
+     * @param entities New elements to save. Keys must be unique.
+     * @return Number of elements saved and errors for every shard
+     * @throws io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException if any element maps to a
+     *                                                                             blacklisted shard
+     */
+    public BulkSaveResult saveAll(Collection<T> entities) {
+        val entitiesByKey = new HashMap<String, T>(entities.size() * 2);
+        for (T entity : entities) {
+            val key = keyOf(entity);
+            Preconditions.checkArgument(null == entitiesByKey.put(key, entity), "Duplicate key: " + key);
+        }
+        return shardCalculator.writeBatch(entitiesByKey.keySet(),
+                                          (keys, movingKeys) -> saveByShard(entitiesByKey, keys, movingKeys));
+    }
+
+    private BulkSaveResult saveByShard(Map<String, T> entitiesByKey, List<String> keys, List<String> movingKeys) {
+        val keysByShard = shardCalculator.groupByShard(keys);
+        val futures = new HashMap<Integer, CompletableFuture<ShardSaveOutcome>>();
+        for (int shardId : keysByShard.shardIds()) {
+            val shardEntities = keysByShard.keys(shardId)
+                    .stream()
+                    .map(entitiesByKey::get)
+                    .collect(Collectors.toList());
+            futures.put(shardId, shardExecutors.submit(shardId, () -> saveOnShard(shardId, shardEntities)));
+        }
+        val outcomes = new HashMap<Integer, ShardSaveOutcome>();
+        futures.forEach((shardId, future) -> {
+            try {
+                outcomes.put(shardId, future.join());
+            } catch (CompletionException e) {
+                val outcome = new ShardSaveOutcome();
+                outcome.failed(keysByShard.keys(shardId), e.getCause());
+                outcomes.put(shardId, outcome);
+            }
+        });
+        for (String key : movingKeys) {
+            val outcome = outcomes.computeIfAbsent(shardCalculator.shardId(key), shardId -> new ShardSaveOutcome());
+            try {
+                save(entitiesByKey.get(key));
+                outcome.saved++;
+            } catch (Exception e) {
+                outcome.failed(Collections.singletonList(key), e);
+            }
+        }
+        val savedByShard = new HashMap<Integer, Integer>();
+        val failedShards = new HashMap<Integer, Throwable>();
+        val failedKeys = new ArrayList<String>();
+        outcomes.forEach((shardId, outcome) -> {
+            savedByShard.put(shardId, outcome.saved);
+            if (null != outcome.error) {
+                failedShards.put(shardId, outcome.error);
+                failedKeys.addAll(outcome.failedKeys);
+            }
+        });
+        return new BulkSaveResult(Collections.unmodifiableMap(savedByShard),
+                                  Collections.unmodifiableMap(failedShards),
+                                  Collections.unmodifiableList(failedKeys));
     }
 
     public boolean updateInLock(String id, Function<Optional<T>, T> updater) {
-        int shardId = shardCalculator.shardId(id);
-        LookupDaoPriv dao = daos.get(shardId);
-        return updateImpl(id, dao::getLockedForWrite, updater, shardId);
+        return write(id, shardId -> {
+            LookupDaoPriv dao = daos.get(shardId);
+            return updateImpl(id, dao::getLockedForWrite, updater, shardId);
+        });
     }
 
     public boolean update(String id, Function<Optional<T>, T> updater) {
-        int shardId = shardCalculator.shardId(id);
-        LookupDaoPriv dao = daos.get(shardId);
-        return updateImpl(id, dao::get, updater, shardId);
+        return write(id, shardId -> {
+            LookupDaoPriv dao = daos.get(shardId);
+            return updateImpl(id, dao::get, updater, shardId);
+        });
     }
 
     public int updateUsingQuery(String id, UpdateOperationMeta updateOperationMeta) {
-        int shardId = shardCalculator.shardId(id);
-        LookupDaoPriv dao = daos.get(shardId);
-        return transactionExecutor.execute(dao.sessionFactory, false, dao::update, updateOperationMeta,
-                "updateUsingQuery", shardId);
+        return write(id, shardId -> {
+            LookupDaoPriv dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, false, dao::update, updateOperationMeta,
+                    "updateUsingQuery", shardId);
+        });
     }
 
     private boolean updateImpl(
@@ -322,10 +637,12 @@ public class LookupDao<T> implements ShardedDao<T> {
     }
 
     public LockedContext<T> lockAndGetExecutor(String id) {
-        int shardId = shardCalculator.shardId(id);
+        int bucketId = shardCalculator.routedBucketId(id);
+        int shardId = shardCalculator.shardForBucket(bucketId);
         LookupDaoPriv dao = daos.get(shardId);
         return new LockedContext<>(shardId, dao.sessionFactory, () -> dao.getLockedForWrite(id),
-                entityClass, shardInfoProvider, observer);
+                entityClass, shardInfoProvider, routedObserver(id, bucketId, shardId),
+                shardExecutors.forShard(shardId));
     }
 
     public ReadOnlyContext<T> readOnlyExecutor(String id) {
@@ -359,75 +676,186 @@ public class LookupDao<T> implements ShardedDao<T> {
         } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
-        int shardId = shardCalculator.shardId(id);
+        int bucketId = shardCalculator.routedBucketId(id);
+        int shardId = shardCalculator.shardForBucket(bucketId);
         LookupDaoPriv dao = daos.get(shardId);
         return new LockedContext<>(shardId, dao.sessionFactory, dao::save, entity,
-                entityClass, shardInfoProvider, observer);
+                entityClass, shardInfoProvider, routedObserver(id, bucketId, shardId),
+                shardExecutors.forShard(shardId));
     }
 
     /**
      * Queries using the specified criteria across all shards and returns the result.
-     * <b>Note:</b> This method runs the query serially and it's usage is not recommended.
+     * <b>Note:</b> Shards are queried in parallel, but this still touches every shard and it's usage is not
+     * recommended on hot paths.
      *
      * @param criteria The selct criteria
      * @return List of elements or empty if none match
      */
     public List<T> scatterGather(DetachedCriteria criteria) {
-        return IntStream.range(0, daos.size())
-                .mapToObj(shardId -> {
-                    try {
-                        val dao = daos.get(shardId);
-                        return transactionExecutor.execute(dao.sessionFactory, true, dao::select, criteria, "scatterGather",
-                                shardId);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                }).flatMap(Collection::stream).collect(Collectors.toList());
+        return scatterGatherExecutor.execute(daos.size(), shardId -> {
+                    val dao = daos.get(shardId);
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::select,
+                            CriteriaUtils.copy(criteria), "scatterGather", shardId);
+                })
+                .stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tolerant variant of {@link #scatterGather(DetachedCriteria)}. Blacklisted shards are not queried, and shards
+     * that fail or do not respond within the timeout are reported in the result instead of failing the call.
+     *
+     * @param criteria  The select criteria
+     * @param timeoutMs Time to wait for shards to respond. If not positive, scatterGatherShardTimeoutMs is used.
+     * @return Elements from shards that responded in time along with the shards that did not
+     */
+    public PartialResult<List<T>> scatterGatherPartial(DetachedCriteria criteria, long timeoutMs) {
+        return scatterGatherExecutor.executeTolerant(daos.size(), shardCalculator::isBlacklisted, timeoutMs,
+                        shardId -> {
+                            val dao = daos.get(shardId);
+                            return transactionExecutor.execute(dao.sessionFactory, true, dao::select,
+                                    CriteriaUtils.copy(criteria), "scatterGatherPartial", shardId);
+                        })
+                .map(shardResults -> shardResults.values()
+                        .stream()
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Lazily streams all rows matching the criteria from all shards using the configured fetch size.
+     * See {@link #scatterGatherStream(DetachedCriteria, int)} for details.
+     *
+     * @param criteria The select criteria
+     * @return Stream of matching entities. Must be closed if not fully consumed.
+     */
+    public Stream<T> scatterGatherStream(DetachedCriteria criteria) {
+        return scatterGatherStream(criteria, null != shardingOptions ? shardingOptions.getStreamFetchSize() : 0);
+    }
+
+    /**
+     * Lazily streams all rows matching the criteria from all shards, one shard at a time, using a forward only
+     * cursor. Unlike {@link #scatterGather(DetachedCriteria)}, results are never collected in memory and entities are
+     * evicted from the session as the stream moves past them. The session for a shard is kept open until it's rows are
+     * consumed or the stream is closed.
+     * <b>Note:</b> Always consume the stream in a try-with-resources block.
+     *
+     * @param criteria  The select criteria
+     * @param fetchSize JDBC fetch size hint for the cursor. Driver default is used if not positive.
+     * @return Stream of matching entities. Must be closed if not fully consumed.
+     */
+    public Stream<T> scatterGatherStream(DetachedCriteria criteria, int fetchSize) {
+        return new ShardedScrollIterator<T>(
+                daos.stream().map(dao -> dao.sessionFactory).collect(Collectors.toList()),
+                shardId -> {
+                    val dao = daos.get(shardId);
+                    val scrollParam = ScrollParamPriv.builder()
+                            .criteria(CriteriaUtils.copy(criteria))
+                            .fetchSize(fetchSize)
+                            .build();
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::scroll, scrollParam, false,
+                                                       "scatterGatherStream", shardId);
+                })
+                .stream();
     }
 
     /**
      * Queries using the specified criteria across all shards and returns the counts of rows satisfying the criteria.
-     * <b>Note:</b> This method runs the query serially and it's usage is not recommended.
+     * <b>Note:</b> Shards are queried in parallel, but this still touches every shard and it's usage is not
+     * recommended on hot paths.
      *
      * @param criteria The select criteria
      * @return List of counts in each shard
      */
     public List<Long> count(DetachedCriteria criteria) {
-        return IntStream.range(0, daos.size())
-                .mapToObj(shardId -> {
+        return scatterGatherExecutor.execute(daos.size(), shardId -> {
+            val dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, true, dao::count, CriteriaUtils.copy(criteria),
+                    "count", shardId);
+        });
+    }
+
+    /**
+     * Tolerant variant of {@link #count(DetachedCriteria)}. Blacklisted shards are not queried, and shards that fail
+     * or do not respond within the timeout are reported in the result instead of failing the call.
+     *
+     * @param criteria  The select criteria
+     * @param timeoutMs Time to wait for shards to respond. If not positive, scatterGatherShardTimeoutMs is used.
+     * @return Counts keyed by shard for shards that responded in time along with the shards that did not
+     */
+    public PartialResult<SortedMap<Integer, Long>> countPartial(DetachedCriteria criteria, long timeoutMs) {
+        return scatterGatherExecutor.executeTolerant(daos.size(), shardCalculator::isBlacklisted, timeoutMs,
+                shardId -> {
                     val dao = daos.get(shardId);
-                    try {
-                        return transactionExecutor.execute(dao.sessionFactory, true, dao::count, criteria, "count", shardId);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                }).collect(Collectors.toList());
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::count,
+                            CriteriaUtils.copy(criteria), "countPartial", shardId);
+                });
+    }
+
+    /**
+     * Computes the provided aggregations over rows matching the criteria across all shards.
+     * Aggregates are computed inside every shard in parallel and only the partial aggregates are merged here,
+     * so rows never leave the database. See {@link AggregationQuery} for how each aggregation is merged.
+     *
+     * @param criteria     The select criteria. Must not have a projection set.
+     * @param aggregations Aggregations to compute
+     * @return One row per group (a single row if there is no group by) with a column per aggregation
+     */
+    public List<Object[]> aggregate(DetachedCriteria criteria, List<Aggregation> aggregations) {
+        val query = new AggregationQuery(aggregations, maxDistinctValues());
+        return query.merge(scatterGatherExecutor.execute(daos.size(), shardId -> {
+            val dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, true, selection -> dao.aggregate(query, selection), criteria,
+                    "aggregate", shardId);
+        }));
     }
 
     /**
      * Queries across various shards and returns the results.
-     * <b>Note:</b> This method runs the query serially and is efficient over scatterGather and serial get of all key
+     * <b>Note:</b> Keys are grouped by shard and shards are queried in parallel. Keys for a shard are looked up in
+     * chunks of multiGetChunkSize using IN queries in a single session. This is efficient over scatterGather and
+     * serial get of all keys.
      *
      * @param keys The list of lookup keys
-     * @return List of elements or empty if none match
+     * @return List of elements or empty if none match. Order of elements is not defined.
      */
     public List<T> get(List<String> keys) {
-        Map<Integer, List<String>> lookupKeysGroupByShards = keys.stream()
-                .collect(
-                        Collectors.groupingBy(shardCalculator::shardId, Collectors.toList()));
+        return get(keys, false);
+    }
 
-        return lookupKeysGroupByShards.keySet().stream().map(shardId -> {
-            try {
-                DetachedCriteria criteria = DetachedCriteria.forClass(entityClass)
-                        .add(Restrictions.in(keyField.getName(), lookupKeysGroupByShards.get(shardId)));
-                return transactionExecutor.execute(daos.get(shardId).sessionFactory,
-                        true,
-                        daos.get(shardId)::select,
-                        criteria, "get", shardId);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).flatMap(Collection::stream).collect(Collectors.toList());
+    /**
+     * Queries across various shards and returns the results. See {@link #get(List)} for details.
+     *
+     * @param keys          The list of lookup keys
+     * @param preserveOrder Return elements in the order of the provided keys
+     * @return List of elements or empty if none match. Keys with no matching element are skipped.
+     */
+    public List<T> get(List<String> keys, boolean preserveOrder) {
+        if (!preserveOrder) {
+            return multiGet(keys).stream()
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList());
+        }
+        val entities = getAsMap(keys);
+        return keys.stream()
+                .distinct()
+                .map(entities::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Queries across various shards and returns the results keyed by lookup key. See {@link #get(List)} for details.
+     *
+     * @param keys The lookup keys
+     * @return Map of lookup key to element. Keys with no matching element are not present in the map.
+     */
+    public Map<String, T> getAsMap(Collection<String> keys) {
+        val entities = new HashMap<String, T>();
+        multiGet(keys).forEach(shardEntities -> shardEntities.forEach(entity -> entities.put(keyOf(entity), entity)));
+        return entities;
     }
 
     public <U> U runInSession(String id, Function<Session, U> handler) {
@@ -436,10 +864,511 @@ public class LookupDao<T> implements ShardedDao<T> {
         return transactionExecutor.execute(dao.sessionFactory, true, handler, true, "runInSession", shardId);
     }
 
+    /**
+     * Deletes the element for the key. Entities that need nothing beyond removing their row are deleted with a single
+     * DELETE statement, which waits on a locked row. Entities with delete cascades, owned collections, remove
+     * callbacks, inheritance or second level caching are loaded with a no wait lock and deleted through the session.
+     *
+     * @param id Key of the element
+     * @return true if the element existed
+     */
     public boolean delete(String id) {
-        int shardId = shardCalculator.shardId(id);
-        return transactionExecutor.execute(daos.get(shardId).sessionFactory, false, daos.get(shardId)::delete, id, "delete",
-                shardId);
+        return write(id, shardId -> transactionExecutor.execute(daos.get(shardId).sessionFactory, false,
+                daos.get(shardId)::delete, id, "delete", shardId));
+    }
+
+    /**
+     * Deletes elements for many keys. Keys are grouped by shard and every shard is processed in parallel, in one
+     * transaction that deletes up to multiGetChunkSize keys per statement. See {@link #delete(String)} for when rows
+     * are deleted directly. Keys in buckets that are being moved are deleted one at a time, from both shards.
+     *
+     * @param ids Keys of the elements to delete
+     * @return Number of elements deleted
+     */
+    public int delete(Collection<String> ids) {
+        return shardCalculator.writeBatch(new LinkedHashSet<>(ids), this::deleteByShard);
+    }
+
+    private int deleteByShard(List<String> keys, List<String> movingKeys) {
+        int deleted = 0;
+        val keysByShard = shardCalculator.groupByShard(keys);
+        if (!keysByShard.isEmpty()) {
+            deleted += scatterGatherExecutor.execute(keysByShard.shardIds(), shardId -> {
+                        val dao = daos.get(shardId);
+                        return transactionExecutor.execute(dao.sessionFactory, false, dao::deleteAll,
+                                                           new ArrayList<>(keysByShard.keys(shardId)),
+                                                           "delete", shardId);
+                    })
+                    .stream()
+                    .mapToInt(Integer::intValue)
+                    .sum();
+        }
+        for (String id : movingKeys) {
+            if (delete(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Async version of {@link #get(String)}. Runs on the executor for the shard the key belongs to.
+     *
+     * @param key The value of the key field to look for.
+     * @return Future for the entity
+     */
+    public CompletableFuture<Optional<T>> getAsync(String key) {
+        return async(key, shardId -> () -> Optional.ofNullable(get(key, shardId, t -> t)));
+    }
+
+    /**
+     * Async version of {@link #save(Object)}. Runs on the executor for the shard the entity belongs to.
+     *
+     * @param entity Entity to save
+     * @return Future for the saved entity
+     */
+    public CompletableFuture<Optional<T>> saveAsync(T entity) {
+        return asyncWrite(keyOf(entity), () -> save(entity));
+    }
+
+    /**
+     * Async version of {@link #update(String, Function)}. Runs on the executor for the shard the key belongs to.
+     *
+     * @param id      Id of the object
+     * @param updater Function to update the object
+     * @return Future for whether the object was updated or not
+     */
+    public CompletableFuture<Boolean> updateAsync(String id, Function<Optional<T>, T> updater) {
+        return asyncWrite(id, () -> update(id, updater));
+    }
+
+    /**
+     * Async version of {@link #delete(String)}. Runs on the executor for the shard the key belongs to.
+     *
+     * @param id Id of the object
+     * @return Future for whether the object was deleted or not
+     */
+    public CompletableFuture<Boolean> deleteAsync(String id) {
+        return asyncWrite(id, () -> delete(id));
+    }
+
+    /**
+     * Moves all elements in a bucket to another shard while reads and writes continue. See
+     * {@link #migrateBucket(int, int, BucketMigrationOptions)}.
+     *
+     * @param bucketId    Bucket to move
+     * @param targetShard Shard to move the bucket to
+     * @return Outcome of the move
+     */
+    public BucketMigrationResult migrateBucket(int bucketId, int targetShard) {
+        return migrateBucket(bucketId, targetShard, new BucketMigrationOptions());
+    }
+
+    /**
+     * Moves all elements in a bucket to another shard while reads and writes continue. Steps:
+     * <ol>
+     * <li>Writes to the bucket through any dao sharing the bucket routing start getting recorded</li>
+     * <li>Elements in the bucket on the target shard that are not on the source shard, left behind by an earlier move,
+     * are removed</li>
+     * <li>Elements in the bucket and their related rows are copied to the target shard in batches, keeping ids</li>
+     * <li>Every element and it's related rows are compared with the target shard and copied again if different</li>
+     * <li>Keys written during the move are copied again. The last of them are copied with writes to the bucket held
+     * off, then the bucket is switched over to the target shard in a new version of the bucket map. If any of them
+     * cannot be copied, the bucket is not switched over and the copies are removed from the target shard.</li>
+     * <li>Every element in the bucket on the source shard is checked for on the target shard</li>
+     * <li>If that passes and {@link BucketMigrationOptions#isDeleteFromSource()} is set, elements in the bucket and
+     * their related rows are deleted from the source shard</li>
+     * </ol>
+     * Locked contexts check the shard of the bucket when they run, and fail if it was switched over after they were
+     * created. The bundle shares one bucket map between all it's daos, so the switch over moves the bucket for
+     * relational daos too. Their rows must be listed in {@link BucketMigrationOptions#getRelatedRows()}, rows of
+     * parent keys with no element in this dao are not moved.
+     * <p>
+     * <b>Note:</b> The move is single instance only. The bucket map and the writes recorded during the move are held
+     * in the memory of this instance, other instances keep routing the bucket to the source shard until the move is
+     * reapplied to them with {@link #moveBuckets(Map)}. Stop writes to the bucket from other instances during the
+     * move, and only delete from the source once every instance routes the bucket to the target shard. Persist the
+     * moves from {@link #bucketMap()} and reapply them on startup. Buckets are computed by hashing keys, which the
+     * database cannot do, so finding the elements of a bucket reads the key column of every row on the source and on
+     * the target shard, once each per move. Related rows are read one parent key at a time. Scatter gather queries can
+     * see elements of the bucket on both shards until the move completes.
+     *
+     * @param bucketId    Bucket to move
+     * @param targetShard Shard to move the bucket to
+     * @param options     Batch size, cleanup and related rows
+     * @return Outcome of the move
+     */
+    public BucketMigrationResult migrateBucket(int bucketId, int targetShard, BucketMigrationOptions options) {
+        Preconditions.checkArgument(targetShard >= 0 && targetShard < daos.size(),
+                "Invalid target shard: " + targetShard);
+        Preconditions.checkArgument(options.getBatchSize() > 0, "Batch size must be positive");
+        val batchSize = options.getBatchSize();
+        val relatedRows = options.getRelatedRows();
+        val move = shardCalculator.startMove(bucketId, targetShard);
+        val sourceShard = move.getSourceShard();
+        try {
+            log.info("Moving bucket {} of {} from shard {} to shard {}",
+                     bucketId, entityClass.getSimpleName(), sourceShard, targetShard);
+            val sourceKeys = bucketKeys(sourceShard, bucketId);
+            //Keys of the bucket that can be on the source shard: the ones found there and the ones written since
+            val movedKeys = new LinkedHashSet<String>(sourceKeys);
+            final Predicate<Object> syncWritten = key -> {
+                movedKeys.add((String) key);
+                return sync((String) key, move, relatedRows);
+            };
+            final long copied;
+            final long mismatched;
+            final long version;
+            try {
+                removeStale(bucketId, sourceKeys, move, relatedRows, batchSize);
+                copied = copy(sourceKeys, move, relatedRows, batchSize);
+                mismatched = syncChanged(sourceKeys, move, relatedRows, batchSize);
+                move.syncWrittenKeys(syncWritten);
+                version = shardCalculator.routing().switchOver(move, syncWritten);
+            } catch (RuntimeException e) {
+                log.error("Error moving bucket {}, removing copied elements from shard {}", bucketId, targetShard, e);
+                delete(targetShard, new ArrayList<>(movedKeys), relatedRows, batchSize);
+                throw e;
+            }
+            val remainingKeys = Lists.partition(new ArrayList<>(movedKeys), batchSize)
+                    .stream()
+                    .flatMap(chunk -> elementsByKey(sourceShard, chunk).keySet().stream())
+                    .collect(Collectors.toList());
+            val target = daos.get(targetShard);
+            val missing = remainingKeys.size() - Lists.partition(remainingKeys, batchSize)
+                    .stream()
+                    .mapToLong(chunk -> transactionExecutor.execute(target.sessionFactory, true, target::getAll,
+                                                                    chunk, "migrateBucket", targetShard).size())
+                    .sum();
+            long deleted = 0;
+            if (missing != 0) {
+                log.warn("{} elements of bucket {} not found on shard {}, leaving them on shard {}",
+                         missing, bucketId, targetShard, sourceShard);
+            } else if (options.isDeleteFromSource()) {
+                deleted = delete(sourceShard, remainingKeys, relatedRows, batchSize);
+            }
+            log.info("Moved bucket {} of {} from shard {} to shard {}. Copied: {} Mismatched: {} Missing: {} "
+                             + "Deleted: {}",
+                     bucketId, entityClass.getSimpleName(), sourceShard, targetShard, copied, mismatched, missing,
+                     deleted);
+            return BucketMigrationResult.builder()
+                    .bucketId(bucketId)
+                    .sourceShard(sourceShard)
+                    .targetShard(targetShard)
+                    .bucketMapVersion(version)
+                    .copiedRows(copied)
+                    .mismatchedRows(mismatched)
+                    .missingRows(missing)
+                    .deletedRows(deleted)
+                    .build();
+        } finally {
+            shardCalculator.routing().endMove(move);
+        }
+    }
+
+    /**
+     * Routes buckets to shards without copying any data. Use this on startup to reapply moves made earlier by
+     * {@link #migrateBucket(int, int, BucketMigrationOptions)}.
+     *
+     * @param moves Bucket to shard mapping
+     * @return Version of the bucket map after the moves
+     */
+    public long moveBuckets(Map<Integer, Integer> moves) {
+        moves.forEach((bucketId, shardId) -> {
+            Preconditions.checkArgument(shardId >= 0 && shardId < daos.size(), "Invalid shard: " + shardId);
+            shardCalculator.moveBucket(bucketId, shardId);
+        });
+        return shardCalculator.bucketMap().version();
+    }
+
+    /**
+     * @return Buckets moved away from the shards assigned to them by the shard manager
+     */
+    public BucketMap bucketMap() {
+        return shardCalculator.bucketMap();
+    }
+
+    private List<String> bucketKeys(int shardId, int bucketId) {
+        val dao = daos.get(shardId);
+        return transactionExecutor.execute(dao.sessionFactory, true, dao::bucketKeys, bucketId,
+                "migrateBucket", shardId);
+    }
+
+    private long copy(List<String> keys, BucketMove move, List<RelatedRows<?>> relatedRows, int batchSize) {
+        val source = daos.get(move.getSourceShard());
+        val target = daos.get(move.getTargetShard());
+        long copied = 0;
+        for (val chunk : Lists.partition(keys, batchSize)) {
+            copied += transactionExecutor.<List<T>, List<String>, Integer>execute(source.sessionFactory, true,
+                    source::getAll, chunk, entities -> {
+                        entities.forEach(source::evict);
+                        return transactionExecutor.execute(target.sessionFactory, false, target::copyIn, entities,
+                                                           "migrateBucket", move.getTargetShard());
+                    }, "migrateBucket", move.getSourceShard());
+            for (val rows : relatedRows) {
+                rows.getDao().syncRows(chunk, rows.getRowsOf(), move.getSourceShard(), move.getTargetShard());
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Removes elements in the bucket on the target shard that are not on the source shard.
+     */
+    private void removeStale(int bucketId,
+                             List<String> sourceKeys,
+                             BucketMove move,
+                             List<RelatedRows<?>> relatedRows,
+                             int batchSize) {
+        val sourceKeySet = new HashSet<String>(sourceKeys);
+        val stale = bucketKeys(move.getTargetShard(), bucketId)
+                .stream()
+                .filter(key -> !sourceKeySet.contains(key))
+                .collect(Collectors.toList());
+        delete(move.getTargetShard(), stale, relatedRows, batchSize);
+    }
+
+    /**
+     * Compares every element and it's related rows with the target shard, and copies again the ones that differ.
+     *
+     * @return Number of elements copied again
+     */
+    private long syncChanged(List<String> keys, BucketMove move, List<RelatedRows<?>> relatedRows, int batchSize) {
+        long changed = 0;
+        for (val chunk : Lists.partition(keys, batchSize)) {
+            val sourceElements = elementsByKey(move.getSourceShard(), chunk);
+            val targetElements = elementsByKey(move.getTargetShard(), chunk);
+            val changedKeys = new LinkedHashSet<String>();
+            for (String key : chunk) {
+                if (!EntityContent.same(daos.get(move.getSourceShard()).sessionFactory,
+                                        sourceElements.get(key), targetElements.get(key))) {
+                    changedKeys.add(key);
+                }
+            }
+            for (val rows : relatedRows) {
+                changedKeys.addAll(rows.getDao().changedParents(chunk, rows.getRowsOf(),
+                                                                move.getSourceShard(), move.getTargetShard()));
+            }
+            for (String key : changedKeys) {
+                Preconditions.checkState(sync(key, move, relatedRows),
+                        "Could not sync element " + key + " to shard " + move.getTargetShard());
+            }
+            changed += changedKeys.size();
+        }
+        return changed;
+    }
+
+    private Map<String, T> elementsByKey(int shardId, List<String> keys) {
+        val dao = daos.get(shardId);
+        return transactionExecutor.execute(dao.sessionFactory, true, dao::getAll, keys, "migrateBucket", shardId)
+                .stream()
+                .collect(Collectors.toMap(this::keyOf, Function.identity()));
+    }
+
+    private long delete(int shardId, List<String> keys, List<RelatedRows<?>> relatedRows, int batchSize) {
+        val dao = daos.get(shardId);
+        long deleted = 0;
+        for (val chunk : Lists.partition(keys, batchSize)) {
+            for (val rows : relatedRows) {
+                rows.getDao().deleteRows(chunk, rows.getRowsOf(), shardId);
+            }
+            deleted += transactionExecutor.execute(dao.sessionFactory, false, dao::deleteAll, chunk,
+                                                   "migrateBucket", shardId);
+        }
+        return deleted;
+    }
+
+    /**
+     * Makes the element for the key and it's related rows on the target shard same as those on the source shard.
+     *
+     * @return false if that failed
+     */
+    private boolean sync(String key, BucketMove move, List<RelatedRows<?>> relatedRows) {
+        val source = daos.get(move.getSourceShard());
+        val target = daos.get(move.getTargetShard());
+        try {
+            transactionExecutor.<T, String, Boolean>execute(source.sessionFactory, true, source::get, key, entity -> {
+                if (null == entity) {
+                    return transactionExecutor.execute(target.sessionFactory, false, target::delete, key,
+                                                       "migrateBucket", move.getTargetShard());
+                }
+                return transactionExecutor.execute(target.sessionFactory, false, target::overwrite,
+                                                   source.evict(entity), "migrateBucket", move.getTargetShard());
+            }, "migrateBucket", move.getSourceShard());
+            for (val rows : relatedRows) {
+                rows.getDao().syncRows(Collections.singletonList(key), rows.getRowsOf(),
+                                       move.getSourceShard(), move.getTargetShard());
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Error syncing key {} to shard {}", key, move.getTargetShard(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Runs a write on the shard for the key. See {@link ShardCalculator#write(Object, IntFunction)}.
+     */
+    private <R> R write(String key, IntFunction<R> writer) {
+        return shardCalculator.write(key, writer);
+    }
+
+    /**
+     * Observer for locked contexts, which are routed when created but run later. Whether the bucket is being moved is
+     * checked when the context runs, see {@link ShardCalculator#writeRouted(Object, int, int, Supplier)}.
+     */
+    private TransactionObserver routedObserver(String key, int bucketId, int shardId) {
+        return new TransactionObserver(observer) {
+            @Override
+            public <R> R execute(TransactionExecutionContext context, Supplier<R> supplier) {
+                return shardCalculator.writeRouted(key, bucketId, shardId, () -> proceed(context, supplier));
+            }
+        };
+    }
+
+
+    /**
+     * Routes the key once and runs the call for the resulting shard on the executor for that shard.
+     */
+    private <R> CompletableFuture<R> async(String key, IntFunction<Callable<R>> call) {
+        final int shardId;
+        try {
+            shardId = shardCalculator.shardId(key);
+        } catch (Exception e) {
+            return ShardExecutors.failedFuture(e);
+        }
+        return shardExecutors.submit(shardId, call.apply(shardId));
+    }
+
+    /**
+     * Writes route the key again when they run, so that they follow buckets that move in the meantime. The executor
+     * is picked without counting the key, so that traffic is counted once per call.
+     */
+    private <R> CompletableFuture<R> asyncWrite(String key, Callable<R> call) {
+        try {
+            return shardExecutors.submit(shardCalculator.shardForBucket(shardCalculator.bucketId(key)), call);
+        } catch (Exception e) {
+            return ShardExecutors.failedFuture(e);
+        }
+    }
+
+    private List<List<T>> multiGet(Collection<String> keys) {
+        val keysByShard = shardCalculator.groupByShard(new LinkedHashSet<>(keys));
+        if (keysByShard.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return scatterGatherExecutor.execute(keysByShard.shardIds(), shardId -> {
+            val dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, true, dao::getAll,
+                    new ArrayList<>(keysByShard.keys(shardId)), "get", shardId);
+        });
+    }
+
+    private ShardSaveOutcome saveOnShard(int shardId, List<T> entities) {
+        val dao = daos.get(shardId);
+        val outcome = new ShardSaveOutcome();
+        for (val batch : Lists.partition(entities, saveAllBatchSize())) {
+            try {
+                outcome.saved += transactionExecutor.execute(dao.sessionFactory, false, dao::saveAll, batch,
+                                                             "saveAll", shardId);
+            } catch (RuntimeException e) {
+                log.error("Error saving batch of {} {} elements on shard {}",
+                          batch.size(), entityClass.getSimpleName(), shardId, e);
+                outcome.failed(batch.stream().map(this::keyOf).collect(Collectors.toList()), e);
+            }
+        }
+        return outcome;
+    }
+
+    private int maxDistinctValues() {
+        return null != shardingOptions && shardingOptions.getMaxDistinctValues() > 0
+                ? shardingOptions.getMaxDistinctValues()
+                : AggregationQuery.DEFAULT_MAX_DISTINCT_VALUES;
+    }
+
+    private int saveAllBatchSize() {
+        return null != shardingOptions && shardingOptions.getSaveAllBatchSize() > 0
+                ? shardingOptions.getSaveAllBatchSize()
+                : DEFAULT_SAVE_ALL_BATCH_SIZE;
+    }
+
+    /**
+     * A row can be removed with a plain DELETE when hibernate would do nothing else while deleting the entity. Custom
+     * delete statements (like soft deletes), where clauses and delete event listeners (like envers) all rule it out.
+     */
+    private boolean canDeleteDirectly(SessionFactory sessionFactory) {
+        val factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+        val persister = factory.getMetamodel().entityPersister(entityClass);
+        val callbacks = factory.getEventEngine().getCallbackRegistry();
+        val listeners = factory.getServiceRegistry().getService(EventListenerRegistry.class);
+        if (persister.getEntityMetamodel().isInherited()
+                || persister.getEntityMetamodel().hasSubclasses()
+                || persister.canWriteToCache()
+                || callbacks.hasRegisteredCallbacks(entityClass, CallbackType.PRE_REMOVE)
+                || callbacks.hasRegisteredCallbacks(entityClass, CallbackType.POST_REMOVE)
+                || entityClass.isAnnotationPresent(SQLDelete.class)
+                || entityClass.isAnnotationPresent(SQLDeleteAll.class)
+                || entityClass.isAnnotationPresent(Where.class)
+                || factory.getProperties().containsKey(PRE_REMOVE_VALIDATION_GROUP)
+                || !onlyStandard(listeners.getEventListenerGroup(EventType.PRE_DELETE),
+                                 BeanValidationEventListener.class)
+                || !onlyStandard(listeners.getEventListenerGroup(EventType.POST_DELETE),
+                                 PostDeleteEventListenerStandardImpl.class)
+                || !onlyStandard(listeners.getEventListenerGroup(EventType.POST_COMMIT_DELETE))
+                || !onlyStandard(listeners.getEventListenerGroup(EventType.DELETE),
+                                 DefaultDeleteEventListener.class)) {
+            return false;
+        }
+        if (persister instanceof AbstractEntityPersister) {
+            val tables = ((AbstractEntityPersister) persister).getTableSpan();
+            for (int j = 0; j < tables; j++) {
+                if (((AbstractEntityPersister) persister).isDeleteCallable(j)) {
+                    return false;
+                }
+            }
+        }
+        val types = persister.getPropertyTypes();
+        val cascades = persister.getPropertyCascadeStyles();
+        for (int i = 0; i < types.length; i++) {
+            if (cascades[i].doCascade(CascadingActions.DELETE)) {
+                return false;
+            }
+            if (types[i].isCollectionType()
+                    && !factory.getMetamodel()
+                    .collectionPersister(((CollectionType) types[i]).getRole())
+                    .isInverse()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hibernate registers bean validation (which validates nothing on delete unless a pre-remove group is set)
+     * and the JPA callback dispatcher (covered by the callback checks) by default. Anything else may act on
+     * deleted entities.
+     */
+    private static boolean onlyStandard(EventListenerGroup<?> group, Class<?>... standard) {
+        for (val listener : group.listeners()) {
+            if (!Arrays.asList(standard).contains(listener.getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int multiGetChunkSize() {
+        return null != shardingOptions && shardingOptions.getMultiGetChunkSize() > 0
+                ? shardingOptions.getMultiGetChunkSize()
+                : DEFAULT_MULTI_GET_CHUNK_SIZE;
+    }
+
+    private String keyOf(T entity) {
+        try {
+            return keyField.get(entity).toString();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not read key field of " + entityClass.getSimpleName(), e);
+        }
     }
 
     protected Field getKeyField() {
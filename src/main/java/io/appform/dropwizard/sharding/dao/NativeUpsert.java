@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import com.google.common.base.Preconditions;
+import lombok.val;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.hibernate.type.Type;
+
+import javax.persistence.Column;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes entities with a single dialect specific upsert statement per batch: MERGE ... KEY on H2 and
+ * INSERT ... ON DUPLICATE KEY UPDATE on MySQL. Statements are built from the hibernate mapping of the entity, and
+ * every insertable column is written. Only entities mapped to a single table, without inheritance, are supported.
+ * Rows are matched on the id, so ids must be assigned before the upsert. Versions are written as they are on the
+ * entity and are not checked or incremented.
+ * <p>
+ * The session is flushed before the statement runs. Afterwards, copies of the written rows already loaded in the
+ * session or the second level cache are evicted, so later reads see the new rows. MySQL applies ON DUPLICATE KEY
+ * UPDATE to a row that clashes on any unique key, not just the id, which would overwrite some other row. Entities
+ * with unique columns, natural ids or unique constraints on their table are therefore rejected on MySQL. Unique
+ * indexes created outside the mapping cannot be detected, don't use native upserts on such tables.
+ */
+final class NativeUpsert<T> {
+    private final SessionFactoryImplementor sessionFactory;
+    private final SingleTableEntityPersister persister;
+    private final int[] properties;
+    private final String sql;
+
+    private NativeUpsert(SessionFactoryImplementor sessionFactory,
+                         SingleTableEntityPersister persister,
+                         int[] properties,
+                         String sql) {
+        this.sessionFactory = sessionFactory;
+        this.persister = persister;
+        this.properties = properties;
+        this.sql = sql;
+    }
+
+    static <T> NativeUpsert<T> create(SessionFactory sessionFactory, Class<T> entityClass) {
+        val factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+        val entityPersister = factory.getMetamodel().entityPersister(entityClass);
+        Preconditions.checkArgument(entityPersister instanceof SingleTableEntityPersister
+                                            && !entityPersister.getEntityMetamodel().isInherited()
+                                            && !entityPersister.getEntityMetamodel().hasSubclasses(),
+                                    "Native upsert needs an entity mapped to a single table without inheritance: "
+                                            + entityClass.getSimpleName());
+        val persister = (SingleTableEntityPersister) entityPersister;
+        val idColumns = Arrays.asList(persister.getIdentifierColumnNames());
+        val valueColumns = new ArrayList<String>();
+        val properties = new ArrayList<Integer>();
+        val types = persister.getPropertyTypes();
+        val insertable = persister.getPropertyInsertability();
+        for (int i = 0; i < types.length; i++) {
+            val columns = persister.getPropertyColumnNames(i);
+            if (!insertable[i] || types[i].isCollectionType() || columns.length == 0) {
+                continue;
+            }
+            valueColumns.addAll(Arrays.asList(columns));
+            properties.add(i);
+        }
+        val dialect = factory.getJdbcServices().getDialect();
+        Preconditions.checkArgument(!(dialect instanceof MySQLDialect) || !hasOtherUniqueKeys(persister, entityClass),
+                                    "Native upsert on MySQL needs the id to be the only unique key: "
+                                            + entityClass.getSimpleName());
+        val sql = sql(dialect, persister.getTableName(), idColumns, valueColumns);
+        return new NativeUpsert<>(factory, persister, properties.stream().mapToInt(Integer::intValue).toArray(), sql);
+    }
+
+    /**
+     * Upserts all entities as one JDBC batch, on the connection of the session.
+     *
+     * @return Number of entities written
+     */
+    int execute(Session session, List<T> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        val sessionImplementor = session.unwrap(SharedSessionContractImplementor.class);
+        val idType = persister.getIdentifierType();
+        val types = persister.getPropertyTypes();
+        session.flush();
+        val written = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (T entity : entities) {
+                    val id = persister.getIdentifier(entity, sessionImplementor);
+                    Preconditions.checkArgument(null != id, "Id must be set for upsert");
+                    int index = 1;
+                    idType.nullSafeSet(statement, id, index, sessionImplementor);
+                    index += idType.getColumnSpan(sessionFactory);
+                    val values = persister.getPropertyValues(entity);
+                    for (int property : properties) {
+                        final Type type = types[property];
+                        type.nullSafeSet(statement, values[property], index, sessionImplementor);
+                        index += type.getColumnSpan(sessionFactory);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return entities.size();
+        });
+        evictLoaded(session, sessionImplementor, entities);
+        return written;
+    }
+
+    private void evictLoaded(Session session, SharedSessionContractImplementor sessionImplementor, List<T> entities) {
+        val persistenceContext = sessionImplementor.getPersistenceContext();
+        for (T entity : entities) {
+            val id = persister.getIdentifier(entity, sessionImplementor);
+            val loaded = persistenceContext.getEntity(sessionImplementor.generateEntityKey(id, persister));
+            if (null != loaded) {
+                session.evict(loaded);
+            }
+            if (persister.canWriteToCache()) {
+                sessionFactory.getCache().evictEntityData(persister.getEntityName(), id);
+            }
+        }
+    }
+
+    private static boolean hasOtherUniqueKeys(SingleTableEntityPersister persister, Class<?> entityClass) {
+        if (persister.getEntityMetamodel().hasNaturalIdentifier()) {
+            return true;
+        }
+        for (boolean unique : persister.getPropertyUniqueness()) {
+            if (unique) {
+                return true;
+            }
+        }
+        for (String property : persister.getPropertyNames()) {
+            val field = FieldUtils.getField(entityClass, property, true);
+            if (null == field) {
+                continue;
+            }
+            val column = field.getAnnotation(Column.class);
+            val joinColumn = field.getAnnotation(JoinColumn.class);
+            if ((null != column && column.unique())
+                    || (null != joinColumn && joinColumn.unique())
+                    || field.isAnnotationPresent(OneToOne.class)) {
+                return true;
+            }
+        }
+        val table = entityClass.getAnnotation(Table.class);
+        if (null == table) {
+            return false;
+        }
+        if (table.uniqueConstraints().length > 0) {
+            return true;
+        }
+        for (Index index : table.indexes()) {
+            if (index.unique()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String sql(Dialect dialect, String table, List<String> idColumns, List<String> valueColumns) {
+        val columns = new ArrayList<String>(idColumns);
+        columns.addAll(valueColumns);
+        val columnList = String.join(", ", columns);
+        val placeholders = columns.stream().map(column -> "?").collect(Collectors.joining(", "));
+        if (dialect instanceof H2Dialect) {
+            return String.format("merge into %s (%s) key (%s) values (%s)",
+                                 table, columnList, String.join(", ", idColumns), placeholders);
+        }
+        if (dialect instanceof MySQLDialect) {
+            val updates = (valueColumns.isEmpty() ? idColumns.subList(0, 1) : valueColumns)
+                    .stream()
+                    .map(column -> String.format("%s = values(%s)", column, column))
+                    .collect(Collectors.joining(", "));
+            return String.format("insert into %s (%s) values (%s) on duplicate key update %s",
+                                 table, columnList, placeholders, updates);
+        }
+        throw new UnsupportedOperationException("Native upsert is not supported for "
+                                                        + dialect.getClass().getSimpleName());
+    }
+}
@@ -17,38 +17,69 @@
 
 package io.appform.dropwizard.sharding.dao;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import io.appform.dropwizard.sharding.ShardInfoProvider;
+import io.appform.dropwizard.sharding.aggregation.Aggregation;
+import io.appform.dropwizard.sharding.aggregation.AggregationQuery;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.appform.dropwizard.sharding.execution.PartialResult;
+import io.appform.dropwizard.sharding.execution.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.execution.ShardExecutors;
+import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
 import io.appform.dropwizard.sharding.execution.TransactionExecutor;
 import io.appform.dropwizard.sharding.observers.TransactionObserver;
+import io.appform.dropwizard.sharding.utils.CriteriaUtils;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
+import io.appform.dropwizard.sharding.utils.SortedMergeIterator;
 import io.dropwizard.hibernate.AbstractDAO;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.hibernate.Criteria;
 import org.hibernate.LockMode;
+import org.hibernate.ReplicationMode;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
 
 import javax.persistence.Id;
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * A dao used to work with entities related to a parent shard. The parent may or maynot be physically present.
@@ -60,6 +91,7 @@ public class RelationalDao<T> implements ShardedDao<T> {
     private final class RelationalDaoPriv extends AbstractDAO<T> {
 
         private final SessionFactory sessionFactory;
+        private final Supplier<NativeUpsert<T>> nativeUpsert;
 
         /**
          * Creates a new DAO with a given session provider.
@@ -69,6 +101,7 @@ public class RelationalDao<T> implements ShardedDao<T> {
         public RelationalDaoPriv(SessionFactory sessionFactory) {
             super(sessionFactory);
             this.sessionFactory = sessionFactory;
+            this.nativeUpsert = Suppliers.memoize(() -> NativeUpsert.create(sessionFactory, entityClass));
         }
 
         T get(Object lookupKey) {
@@ -78,6 +111,22 @@ public class RelationalDao<T> implements ShardedDao<T> {
                     .setLockMode(LockMode.READ));
         }
 
+        /**
+         * Fetch elements for the provided ids, querying at most multiGetChunkSize ids at a time.
+         *
+         * @param ids ids of elements, all of which belong to this shard
+         * @return List of elements found
+         */
+        List<T> getAll(List<Object> ids) {
+            return Lists.partition(ids, multiGetChunkSize())
+                    .stream()
+                    .flatMap(chunk -> list(currentSession()
+                                                   .createCriteria(entityClass)
+                                                   .add(Restrictions.in(keyField.getName(), chunk))
+                                                   .setLockMode(LockMode.READ)).stream())
+                    .collect(Collectors.toList());
+        }
+
         T getLockedForWrite(DetachedCriteria criteria) {
             return uniqueResult(criteria.getExecutableCriteria(currentSession())
                     .setLockMode(LockMode.UPGRADE_NOWAIT));
@@ -87,11 +136,27 @@ public class RelationalDao<T> implements ShardedDao<T> {
             return persist(entity);
         }
 
-        boolean saveAll(Collection<T> entities) {
-            for (T entity : entities) {
+        /**
+         * Persists a batch and flushes it, so that the inserts go out as one JDBC batch. The batch is then dropped
+         * from the session, either by clearing the session or, when the session holds other entities that must stay
+         * managed, by evicting just the batch.
+         */
+        int saveBatch(List<T> batch, boolean clearSession) {
+            val session = currentSession();
+            for (T entity : batch) {
                 persist(entity);
             }
-            return true;
+            session.flush();
+            if (clearSession) {
+                session.clear();
+            } else {
+                batch.forEach(session::evict);
+            }
+            return batch.size();
+        }
+
+        int upsertBatch(List<T> batch) {
+            return nativeUpsert.get().execute(currentSession(), batch);
         }
 
         void update(T oldEntity, T entity) {
@@ -108,6 +173,12 @@ public class RelationalDao<T> implements ShardedDao<T> {
 
         ScrollableResults scroll(ScrollParamPriv scrollDetails) {
             final Criteria criteria = scrollDetails.getCriteria().getExecutableCriteria(currentSession());
+            if (scrollDetails.getFetchSize() > 0) {
+                criteria.setFetchSize(scrollDetails.getFetchSize());
+            }
+            if (scrollDetails.getMaxResults() > 0) {
+                criteria.setMaxResults(scrollDetails.getMaxResults());
+            }
             return criteria.scroll(ScrollMode.FORWARD_ONLY);
         }
 
@@ -117,6 +188,39 @@ public class RelationalDao<T> implements ShardedDao<T> {
                     .uniqueResult();
         }
 
+        List<T> selectAll(DetachedCriteria criteria) {
+            return list(criteria.getExecutableCriteria(currentSession()));
+        }
+
+        /**
+         * Replaces the rows matching the criteria with rows read from another shard, keeping their ids.
+         */
+        int replaceAll(DetachedCriteria criteria, List<T> rows) {
+            val session = currentSession();
+            val ids = rows.stream()
+                    .map(row -> sessionFactory.getPersistenceUnitUtil().getIdentifier(row))
+                    .collect(Collectors.toSet());
+            for (T existing : selectAll(criteria)) {
+                if (ids.contains(sessionFactory.getPersistenceUnitUtil().getIdentifier(existing))) {
+                    session.evict(existing);
+                } else {
+                    session.delete(existing);
+                }
+            }
+            rows.forEach(row -> session.replicate(row, ReplicationMode.OVERWRITE));
+            return rows.size();
+        }
+
+        int deleteAll(DetachedCriteria criteria) {
+            val rows = selectAll(criteria);
+            rows.forEach(row -> currentSession().delete(row));
+            return rows.size();
+        }
+
+        List<List<Object>> aggregate(AggregationQuery query, DetachedCriteria criteria) {
+            return query.run(currentSession(), criteria);
+        }
+
         public int update(final UpdateOperationMeta updateOperationMeta) {
             Query query = currentSession().createNamedQuery(updateOperationMeta.getQueryName());
             updateOperationMeta.getParams().forEach(query::setParameter);
@@ -136,15 +240,27 @@ public class RelationalDao<T> implements ShardedDao<T> {
     private static class ScrollParamPriv {
         @Getter
         private DetachedCriteria criteria;
+        @Getter
+        private int fetchSize;
+        @Getter
+        private int maxResults;
     }
 
+    private static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 500;
+    private static final int DEFAULT_SAVE_ALL_BATCH_SIZE = 100;
+    private static final ObjectMapper CHECKPOINT_MAPPER = new ObjectMapper();
+
     private List<RelationalDaoPriv> daos;
     private final Class<T> entityClass;
     @Getter
     private final ShardCalculator<String> shardCalculator;
+    @Getter
+    private final ShardingBundleOptions shardingOptions;
     private final Field keyField;
 
     private final TransactionExecutor transactionExecutor;
+    private final ScatterGatherExecutor scatterGatherExecutor;
+    private final ShardExecutors shardExecutors;
     private final ShardInfoProvider shardInfoProvider;
     private final TransactionObserver observer;
 
@@ -160,12 +276,68 @@ public class RelationalDao<T> implements ShardedDao<T> {
             ShardCalculator<String> shardCalculator,
             final ShardInfoProvider shardInfoProvider,
             final TransactionObserver observer) {
+        this(sessionFactories,
+                entityClass,
+                shardCalculator,
+                new ShardingBundleOptions(),
+                shardInfoProvider,
+                observer,
+                ScatterGatherExecutor.create(null, sessionFactories.size()));
+    }
+
+    /**
+     * Create a relational DAO.
+     *
+     * @param sessionFactories      List of session factories. One for each shard.
+     * @param entityClass           The class for which the dao will be used.
+     * @param shardCalculator
+     * @param shardingOptions       Bundle options
+     * @param scatterGatherExecutor Executor used to fan out queries to all shards
+     */
+    public RelationalDao(
+            List<SessionFactory> sessionFactories, Class<T> entityClass,
+            ShardCalculator<String> shardCalculator,
+            final ShardingBundleOptions shardingOptions,
+            final ShardInfoProvider shardInfoProvider,
+            final TransactionObserver observer,
+            final ScatterGatherExecutor scatterGatherExecutor) {
+        this(sessionFactories,
+                entityClass,
+                shardCalculator,
+                shardingOptions,
+                shardInfoProvider,
+                observer,
+                scatterGatherExecutor,
+                ShardExecutors.create(shardingOptions, sessionFactories.size()));
+    }
+
+    /**
+     * Create a relational DAO.
+     *
+     * @param sessionFactories      List of session factories. One for each shard.
+     * @param entityClass           The class for which the dao will be used.
+     * @param shardCalculator
+     * @param shardingOptions       Bundle options
+     * @param scatterGatherExecutor Executor used to fan out queries to all shards
+     * @param shardExecutors        Executors used to run async calls on shards
+     */
+    public RelationalDao(
+            List<SessionFactory> sessionFactories, Class<T> entityClass,
+            ShardCalculator<String> shardCalculator,
+            final ShardingBundleOptions shardingOptions,
+            final ShardInfoProvider shardInfoProvider,
+            final TransactionObserver observer,
+            final ScatterGatherExecutor scatterGatherExecutor,
+            final ShardExecutors shardExecutors) {
         this.shardCalculator = shardCalculator;
+        this.shardingOptions = null != shardingOptions ? shardingOptions : new ShardingBundleOptions();
         this.daos = sessionFactories.stream().map(RelationalDaoPriv::new).collect(Collectors.toList());
         this.entityClass = entityClass;
         this.shardInfoProvider = shardInfoProvider;
         this.observer = observer;
         this.transactionExecutor = new TransactionExecutor(shardInfoProvider, getClass(), entityClass, observer);
+        this.scatterGatherExecutor = scatterGatherExecutor;
+        this.shardExecutors = shardExecutors;
 
         Field fields[] = FieldUtils.getFieldsWithAnnotation(entityClass, Id.class);
         Preconditions.checkArgument(fields.length != 0, "A field needs to be designated as @Id");
@@ -187,27 +359,153 @@ public class RelationalDao<T> implements ShardedDao<T> {
     }
 
     public <U> U get(String parentKey, Object key, Function<T, U> function) {
-        int shardId = shardCalculator.shardId(parentKey);
+        return get(shardCalculator.shardId(parentKey), key, function);
+    }
+
+    private <U> U get(int shardId, Object key, Function<T, U> function) {
         RelationalDaoPriv dao = daos.get(shardId);
         return transactionExecutor.execute(dao.sessionFactory, true, dao::get, key, function,
                 "get", shardId);
     }
 
+    /**
+     * Get all elements with the provided ids under a parent key. The ids are looked up in a single session using IN
+     * queries of at most multiGetChunkSize ids.
+     *
+     * @param parentKey Key used to locate the shard
+     * @param ids       Ids of the elements
+     * @return List of elements found. Order of elements is not defined.
+     */
+    public List<T> get(String parentKey, Collection<?> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return get(shardCalculator.shardId(parentKey), ids);
+    }
+
+    private List<T> get(int shardId, Collection<?> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        RelationalDaoPriv dao = daos.get(shardId);
+        return transactionExecutor.execute(dao.sessionFactory, true, dao::getAll,
+                ids.stream().distinct().collect(Collectors.toList()), "get", shardId);
+    }
+
+    /**
+     * Get all elements with the provided ids across parent keys. Ids are grouped by shard and shards are queried in
+     * parallel, each in a single session. See {@link #get(String, Collection)}.
+     *
+     * @param idsByParentKey Ids of the elements keyed by the parent key they belong to
+     * @return List of elements found. Order of elements is not defined.
+     */
+    public List<T> get(Map<String, ? extends Collection<?>> idsByParentKey) {
+        val parentKeys = idsByParentKey.entrySet()
+                .stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        val parentKeysByShard = shardCalculator.groupByShard(parentKeys);
+        if (parentKeysByShard.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return scatterGatherExecutor.execute(parentKeysByShard.shardIds(), shardId -> {
+                    val ids = new LinkedHashSet<Object>();
+                    parentKeysByShard.keys(shardId).forEach(parentKey -> ids.addAll(idsByParentKey.get(parentKey)));
+                    val dao = daos.get(shardId);
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::getAll,
+                            new ArrayList<>(ids), "get", shardId);
+                })
+                .stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+    }
+
     public Optional<T> save(String parentKey, T entity) throws Exception {
         return Optional.ofNullable(save(parentKey, entity, t -> t));
     }
 
     public <U> U save(String parentKey, T entity, Function<T, U> handler) {
-        int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
-        return transactionExecutor.execute(dao.sessionFactory, false, dao::save, entity, handler, "save",
-                shardId);
+        return shardCalculator.write(parentKey, shardId -> {
+            RelationalDaoPriv dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, false, dao::save, entity, handler, "save",
+                    shardId);
+        });
     }
 
     public boolean saveAll(String parentKey, Collection<T> entities) {
-        int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
-        return transactionExecutor.execute(dao.sessionFactory, false, dao::saveAll, entities, "saveAll", shardId);
+        return shardCalculator.write(parentKey, shardId -> {
+            RelationalDaoPriv dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory,
+                    false,
+                    (Collection<T> all) -> saveInBatches(dao, shardId, all, true),
+                    entities,
+                    "saveAll",
+                    shardId);
+        });
+    }
+
+    /**
+     * Inserts or overwrites entities with dialect specific upsert statements (MERGE on H2, INSERT ... ON DUPLICATE KEY
+     * UPDATE on MySQL), in batches of saveAllBatchSize. Every batch is one JDBC batch, there is no select and no
+     * lock. Rows are matched on the id, so ids must be assigned by the caller. Every column of the entity is written.
+     *
+     * @param parentKey Key used to route the entities
+     * @param entities  Entities to upsert
+     * @return Number of entities written
+     */
+    public int upsertAll(String parentKey, Collection<T> entities) {
+        return shardCalculator.write(parentKey, shardId -> {
+            RelationalDaoPriv dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory,
+                    false,
+                    (Collection<T> all) -> upsertInBatches(dao, shardId, all),
+                    entities,
+                    "upsertAll",
+                    shardId);
+        });
+    }
+
+    /**
+     * Same as {@link #upsertAll(String, Collection)} for entities of many parents. Entities are grouped by shard,
+     * shards are written in parallel, each in one transaction. Entities of parent keys in buckets that are being moved
+     * are written one parent key at a time.
+     *
+     * @param entitiesByParentKey Entities to upsert, keyed by the parent key used to route them
+     * @return Number of entities written
+     */
+    public int upsertAll(Map<String, ? extends Collection<T>> entitiesByParentKey) {
+        return shardCalculator.writeBatch(entitiesByParentKey.keySet(), (parentKeys, movingParentKeys) ->
+                upsertByShard(entitiesByParentKey, parentKeys)
+                        + movingParentKeys.stream()
+                        .mapToInt(parentKey -> upsertAll(parentKey, entitiesByParentKey.get(parentKey)))
+                        .sum());
+    }
+
+    private int upsertByShard(Map<String, ? extends Collection<T>> entitiesByParentKey, List<String> parentKeys) {
+        val parentKeysByShard = shardCalculator.groupByShard(parentKeys);
+        if (parentKeysByShard.isEmpty()) {
+            return 0;
+        }
+        return scatterGatherExecutor.execute(parentKeysByShard.shardIds(), shardId -> {
+                    val entities = new ArrayList<T>();
+                    parentKeysByShard.keys(shardId)
+                            .forEach(parentKey -> entities.addAll(entitiesByParentKey.get(parentKey)));
+                    val dao = daos.get(shardId);
+                    return transactionExecutor.execute(dao.sessionFactory,
+                            false,
+                            (List<T> all) -> upsertInBatches(dao, shardId, all),
+                            entities,
+                            "upsertAll",
+                            shardId);
+                })
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    <U> void saveAll(LockedContext<U> context, Collection<T> entities) {
+        saveInBatches(daos.get(context.getShardId()), context.getShardId(), entities, false);
     }
 
     <U> void save(LockedContext<U> context, T entity) {
@@ -275,9 +573,10 @@ public class RelationalDao<T> implements ShardedDao<T> {
     }
 
     public boolean update(String parentKey, Object id, Function<T, T> updater) {
-        int shardId = shardCalculator.shardId(parentKey);
-        RelationalDaoPriv dao = daos.get(shardId);
-        return update(shardId, dao.sessionFactory, dao, id, updater, true);
+        return shardCalculator.write(parentKey, shardId -> {
+            RelationalDaoPriv dao = daos.get(shardId);
+            return update(shardId, dao.sessionFactory, dao, id, updater, true);
+        });
     }
 
     public <U> U runInSession(String id, Function<Session, U> handler) {
@@ -306,7 +605,10 @@ public class RelationalDao<T> implements ShardedDao<T> {
     }
 
     public boolean update(String parentKey, DetachedCriteria criteria, Function<T, T> updater) {
-        int shardId = shardCalculator.shardId(parentKey);
+        return shardCalculator.write(parentKey, shardId -> update(shardId, criteria, updater));
+    }
+
+    private boolean update(int shardId, DetachedCriteria criteria, Function<T, T> updater) {
         RelationalDaoPriv dao = daos.get(shardId);
         try {
             SelectParamPriv selectParam = SelectParamPriv.builder()
@@ -336,10 +638,11 @@ public class RelationalDao<T> implements ShardedDao<T> {
 
 
     public int updateUsingQuery(String parentKey, UpdateOperationMeta updateOperationMeta) {
-        int shardId = shardCalculator.shardId(parentKey);
-        val dao = daos.get(shardId);
-        return transactionExecutor.execute(dao.sessionFactory, false, dao::update, updateOperationMeta,
-                "updateUsingQuery", shardId);
+        return shardCalculator.write(parentKey, shardId -> {
+            val dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, false, dao::update, updateOperationMeta,
+                    "updateUsingQuery", shardId);
+        });
     }
 
     public <U> int updateUsingQuery(LockedContext<U> lockedContext, UpdateOperationMeta updateOperationMeta) {
@@ -349,17 +652,21 @@ public class RelationalDao<T> implements ShardedDao<T> {
     }
 
     public LockedContext<T> lockAndGetExecutor(String parentKey, DetachedCriteria criteria) {
-        int shardId = shardCalculator.shardId(parentKey);
+        int bucketId = shardCalculator.routedBucketId(parentKey);
+        int shardId = shardCalculator.shardForBucket(bucketId);
         RelationalDaoPriv dao = daos.get(shardId);
         return new LockedContext<T>(shardId, dao.sessionFactory, () -> dao.getLockedForWrite(criteria),
-                entityClass, shardInfoProvider, observer);
+                entityClass, shardInfoProvider, routedObserver(parentKey, bucketId, shardId),
+                shardExecutors.forShard(shardId));
     }
 
     public LockedContext<T> saveAndGetExecutor(String parentKey, T entity) {
-        int shardId = shardCalculator.shardId(parentKey);
+        int bucketId = shardCalculator.routedBucketId(parentKey);
+        int shardId = shardCalculator.shardForBucket(bucketId);
         RelationalDaoPriv dao = daos.get(shardId);
         return new LockedContext<T>(shardId, dao.sessionFactory, dao::save, entity,
-                entityClass, shardInfoProvider, observer);
+                entityClass, shardInfoProvider, routedObserver(parentKey, bucketId, shardId),
+                shardExecutors.forShard(shardId));
     }
 
     <U> boolean createOrUpdate(LockedContext<U> context,
@@ -401,7 +708,10 @@ public class RelationalDao<T> implements ShardedDao<T> {
     }
 
     public boolean updateAll(String parentKey, int start, int numRows, DetachedCriteria criteria, Function<T, T> updater) {
-        int shardId = shardCalculator.shardId(parentKey);
+        return shardCalculator.write(parentKey, shardId -> updateAll(shardId, start, numRows, criteria, updater));
+    }
+
+    private boolean updateAll(int shardId, int start, int numRows, DetachedCriteria criteria, Function<T, T> updater) {
         RelationalDaoPriv dao = daos.get(shardId);
         try {
             SelectParamPriv selectParam = SelectParamPriv.builder()
@@ -430,12 +740,78 @@ public class RelationalDao<T> implements ShardedDao<T> {
         }
     }
 
+    /**
+     * Updates every row matching the criteria on the shard for the parent key, in chunks, for backfills over more rows
+     * than fit in memory. Rows are visited in order of id. By default all rows are updated in one transaction: rows
+     * are scrolled with the configured fetch size, and the session is flushed and cleared after every chunk so that
+     * it never holds more than a chunk of entities. With commitPerChunk, every chunk is read and updated in it's own
+     * transaction and a checkpoint is handed to the checkpoint listener after every commit. Pass the last checkpoint
+     * back in the options to resume after a failure.
+     * <p>
+     * A bucket cannot start moving to another shard while rows of it are being written. With commitPerChunk the
+     * shard is resolved once and every chunk transaction holds the bucket on it's own, so a move can start between
+     * chunks. A chunk fails if the bucket has been switched over to another shard since, resume from the last
+     * checkpoint to continue on the new shard. Otherwise the bucket is held for the whole update.
+     *
+     * @param parentKey Parent key to route the update
+     * @param criteria  Rows to update. Must not contain any ordering of it's own.
+     * @param updater   Returns the updated entity. Returning null stops the update, rows updated so far are kept.
+     * @param options   Chunk size, fetch size, commit mode and checkpoint
+     * @return Rows updated and the checkpoint after the last one
+     */
+    public ChunkedUpdateResult updateInChunks(String parentKey,
+                                              DetachedCriteria criteria,
+                                              Function<T, T> updater,
+                                              ChunkedUpdateOptions options) {
+        Preconditions.checkArgument(options.getChunkSize() > 0, "Chunk size must be positive");
+        if (!options.isCommitPerChunk()) {
+            return shardCalculator.write(parentKey,
+                                         shardId -> updateInChunks(shardId, criteria, updater, options, Supplier::get));
+        }
+        final int bucketId = shardCalculator.routedBucketId(parentKey);
+        final int shardId = shardCalculator.shardForBucket(bucketId);
+        return updateInChunks(shardId, criteria, updater, options,
+                              chunk -> shardCalculator.writeRouted(parentKey, bucketId, shardId, chunk));
+    }
+
+    /**
+     * @param routedChunk Runs a chunk transaction with the bucket held on the shard
+     */
+    private ChunkedUpdateResult updateInChunks(int shardId,
+                                               DetachedCriteria criteria,
+                                               Function<T, T> updater,
+                                               ChunkedUpdateOptions options,
+                                               Function<Supplier<Boolean>, Boolean> routedChunk) {
+        RelationalDaoPriv dao = daos.get(shardId);
+        val progress = new ChunkedUpdateProgress(Strings.isNullOrEmpty(options.getCheckpoint())
+                                                         ? null
+                                                         : decodeCheckpoint(options.getCheckpoint()));
+        try {
+            if (options.isCommitPerChunk()) {
+                updateChunksInTransactions(dao, shardId, criteria, updater, options, progress, routedChunk);
+            } else {
+                updateChunksInScroll(dao, shardId, criteria, updater, options, progress);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error updating entities in chunks with criteria: " + criteria, e);
+        }
+        return ChunkedUpdateResult.builder()
+                .updatedRows(progress.updated)
+                .chunks(progress.chunks)
+                .checkpoint(null == progress.lastId ? options.getCheckpoint() : encodeCheckpoint(progress.lastId))
+                .completed(!progress.stopped)
+                .build();
+    }
+
     public List<T> select(String parentKey, DetachedCriteria criteria, int first, int numResults) throws Exception {
         return select(parentKey, criteria, first, numResults, t -> t);
     }
 
     public <U> U select(String parentKey, DetachedCriteria criteria, int first, int numResults, Function<List<T>, U> handler) throws Exception {
-        int shardId = shardCalculator.shardId(parentKey);
+        return select(shardCalculator.shardId(parentKey), criteria, first, numResults, handler);
+    }
+
+    private <U> U select(int shardId, DetachedCriteria criteria, int first, int numResults, Function<List<T>, U> handler) throws Exception {
         RelationalDaoPriv dao = daos.get(shardId);
         SelectParamPriv selectParam = SelectParamPriv.<T>builder()
                 .criteria(criteria)
@@ -446,7 +822,10 @@ public class RelationalDao<T> implements ShardedDao<T> {
     }
 
     public long count(String parentKey, DetachedCriteria criteria) {
-        int shardId = shardCalculator.shardId(parentKey);
+        return count(shardCalculator.shardId(parentKey), criteria);
+    }
+
+    private long count(int shardId, DetachedCriteria criteria) {
         RelationalDaoPriv dao = daos.get(shardId);
         return transactionExecutor.<Long, DetachedCriteria>execute(dao.sessionFactory, true, dao::count, criteria,
                 "count", shardId);
@@ -463,40 +842,710 @@ public class RelationalDao<T> implements ShardedDao<T> {
 
     /**
      * Queries using the specified criteria across all shards and returns the counts of rows satisfying the criteria.
-     * <b>Note:</b> This method runs the query serially and it's usage is not recommended.
+     * <b>Note:</b> Shards are queried in parallel, but this still touches every shard and it's usage is not
+     * recommended on hot paths.
      *
      * @param criteria The select criteria
      * @return List of counts in each shard
      */
     public List<Long> countScatterGather(DetachedCriteria criteria) {
-        return IntStream.range(0, daos.size())
-                .mapToObj(shardId -> {
+        return scatterGatherExecutor.execute(daos.size(), shardId -> {
+            val dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, true, dao::count, CriteriaUtils.copy(criteria),
+                    "countScatterGather", shardId);
+        });
+    }
+
+    /**
+     * Tolerant variant of {@link #countScatterGather(DetachedCriteria)}. Blacklisted shards are not queried, and
+     * shards that fail or do not respond within the timeout are reported in the result instead of failing the call.
+     *
+     * @param criteria  The select criteria
+     * @param timeoutMs Time to wait for shards to respond. If not positive, scatterGatherShardTimeoutMs is used.
+     * @return Counts keyed by shard for shards that responded in time along with the shards that did not
+     */
+    public PartialResult<SortedMap<Integer, Long>> countScatterGatherPartial(DetachedCriteria criteria,
+                                                                             long timeoutMs) {
+        return scatterGatherExecutor.executeTolerant(daos.size(), shardCalculator::isBlacklisted, timeoutMs,
+                shardId -> {
                     val dao = daos.get(shardId);
-                    try {
-                        return transactionExecutor.execute(dao.sessionFactory, true, dao::count, criteria,
-                                "countScatterGather", shardId);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                }).collect(Collectors.toList());
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::count,
+                            CriteriaUtils.copy(criteria), "countScatterGatherPartial", shardId);
+                });
+    }
+
+    /**
+     * Computes the provided aggregations over rows matching the criteria in the shard for the given parent key.
+     *
+     * @param parentKey    Key used to locate the shard
+     * @param criteria     The select criteria. Must not have a projection set.
+     * @param aggregations Aggregations to compute
+     * @return One row per group (a single row if there is no group by) with a column per aggregation
+     */
+    public List<Object[]> aggregate(String parentKey, DetachedCriteria criteria, List<Aggregation> aggregations) {
+        val query = new AggregationQuery(aggregations, maxDistinctValues());
+        val shardId = shardCalculator.shardId(parentKey);
+        val dao = daos.get(shardId);
+        return query.merge(Collections.singletonList(
+                transactionExecutor.execute(dao.sessionFactory, true, selection -> dao.aggregate(query, selection), criteria,
+                        "aggregate", shardId)));
+    }
+
+    /**
+     * Computes the provided aggregations over rows matching the criteria across all shards.
+     * Aggregates are computed inside every shard in parallel and only the partial aggregates are merged here,
+     * so rows never leave the database. See {@link AggregationQuery} for how each aggregation is merged.
+     *
+     * @param criteria     The select criteria. Must not have a projection set.
+     * @param aggregations Aggregations to compute
+     * @return One row per group (a single row if there is no group by) with a column per aggregation
+     */
+    public List<Object[]> aggregateScatterGather(DetachedCriteria criteria, List<Aggregation> aggregations) {
+        val query = new AggregationQuery(aggregations, maxDistinctValues());
+        return query.merge(scatterGatherExecutor.execute(daos.size(), shardId -> {
+            val dao = daos.get(shardId);
+            return transactionExecutor.execute(dao.sessionFactory, true, selection -> dao.aggregate(query, selection), criteria,
+                    "aggregateScatterGather", shardId);
+        }));
     }
 
+    /**
+     * Queries using the specified criteria across all shards in parallel. Paging parameters are applied to every
+     * shard independently.
+     *
+     * @param criteria The select criteria
+     * @param start    Start index on each shard
+     * @param numRows  Max number of rows from each shard
+     * @return Concatenated results from all shards
+     */
     public List<T> scatterGather(DetachedCriteria criteria, int start, int numRows) {
-        return IntStream.range(0, daos.size())
-                .mapToObj(shardId -> {
+        return scatterGatherExecutor.execute(daos.size(), shardId -> {
                     val dao = daos.get(shardId);
+                    SelectParamPriv selectParam = SelectParamPriv.<T>builder()
+                            .criteria(CriteriaUtils.copy(criteria))
+                            .start(start)
+                            .numRows(numRows)
+                            .build();
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::select, selectParam,
+                            "scatterGather", shardId);
+                })
+                .stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tolerant variant of {@link #scatterGather(DetachedCriteria, int, int)}. Blacklisted shards are not queried,
+     * and shards that fail or do not respond within the timeout are reported in the result instead of failing the
+     * call.
+     *
+     * @param criteria  The select criteria
+     * @param start     Start index on each shard
+     * @param numRows   Max number of rows from each shard
+     * @param timeoutMs Time to wait for shards to respond. If not positive, scatterGatherShardTimeoutMs is used.
+     * @return Rows from shards that responded in time along with the shards that did not
+     */
+    public PartialResult<List<T>> scatterGatherPartial(DetachedCriteria criteria, int start, int numRows,
+                                                       long timeoutMs) {
+        return scatterGatherExecutor.executeTolerant(daos.size(), shardCalculator::isBlacklisted, timeoutMs,
+                        shardId -> {
+                            val dao = daos.get(shardId);
+                            SelectParamPriv selectParam = SelectParamPriv.<T>builder()
+                                    .criteria(CriteriaUtils.copy(criteria))
+                                    .start(start)
+                                    .numRows(numRows)
+                                    .build();
+                            return transactionExecutor.execute(dao.sessionFactory, true, dao::select, selectParam,
+                                    "scatterGatherPartial", shardId);
+                        })
+                .map(shardResults -> shardResults.values()
+                        .stream()
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Lazily streams all rows matching the criteria from all shards using the configured fetch size.
+     * See {@link #scatterGatherStream(DetachedCriteria, int)} for details.
+     *
+     * @param criteria The select criteria
+     * @return Stream of matching entities. Must be closed if not fully consumed.
+     */
+    public Stream<T> scatterGatherStream(DetachedCriteria criteria) {
+        return scatterGatherStream(criteria, shardingOptions.getStreamFetchSize());
+    }
+
+    /**
+     * Lazily streams all rows matching the criteria from all shards, one shard at a time, using a forward only
+     * cursor. Entities are evicted from the session as the stream moves past them, so memory used does not grow with
+     * the number of rows. The session for a shard is kept open until it's rows are consumed or the stream is closed.
+     * <b>Note:</b> Always consume the stream in a try-with-resources block.
+     *
+     * @param criteria  The select criteria
+     * @param fetchSize JDBC fetch size hint for the cursor. Driver default is used if not positive.
+     * @return Stream of matching entities. Must be closed if not fully consumed.
+     */
+    public Stream<T> scatterGatherStream(DetachedCriteria criteria, int fetchSize) {
+        return new ShardedScrollIterator<T>(
+                daos.stream().map(dao -> dao.sessionFactory).collect(Collectors.toList()),
+                shardId -> {
+                    val dao = daos.get(shardId);
+                    val scrollParam = ScrollParamPriv.builder()
+                            .criteria(CriteriaUtils.copy(criteria))
+                            .fetchSize(fetchSize)
+                            .build();
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::scroll, scrollParam, false,
+                                                       "scatterGatherStream", shardId);
+                })
+                .stream();
+    }
+
+    /**
+     * Queries using the specified criteria across all shards and returns a page of the globally ordered result.
+     * A forward only cursor limited to start + numRows rows is opened on every shard in turn, on the calling thread,
+     * and the cursors are combined with a k-way merge that skips the first start rows as it goes. Shards are queried
+     * one after another, so latency adds up across shards. Skipped rows are evicted right away, so
+     * memory used is proportional to number of shards + numRows, whatever the start. Deep pages still make the shards
+     * read start rows each, use {@link #scatterGather(DetachedCriteria, KeysetPageRequest)} to page through large
+     * results.
+     * <b>Note:</b> The criteria must order rows on every shard in the same way as the provided comparator.
+     * Use {@link #scatterGather(DetachedCriteria, List, int, int)} to have both derived from the same orders.
+     *
+     * @param criteria   The select criteria, ordered consistently with the comparator
+     * @param comparator Comparator used to merge results from shards
+     * @param start      Start index in the globally ordered result
+     * @param numRows    Number of rows to return
+     * @return Rows in [start, start + numRows) of the globally ordered result
+     */
+    public List<T> scatterGather(DetachedCriteria criteria, Comparator<T> comparator, int start, int numRows) {
+        Preconditions.checkArgument(start >= 0, "Start index cannot be negative");
+        Preconditions.checkArgument(numRows >= 0, "Number of rows cannot be negative");
+        if (numRows == 0) {
+            return Collections.emptyList();
+        }
+        val perShardRows = Math.addExact(start, numRows);
+        try (val cursors = new ShardCursors<T>(
+                daos.stream().map(dao -> dao.sessionFactory).collect(Collectors.toList()),
+                shardId -> {
+                    val dao = daos.get(shardId);
+                    val scrollParam = ScrollParamPriv.builder()
+                            .criteria(CriteriaUtils.copy(criteria))
+                            .fetchSize(shardingOptions.getStreamFetchSize())
+                            .maxResults(perShardRows)
+                            .build();
+                    return transactionExecutor.execute(dao.sessionFactory, true, dao::scroll, scrollParam, false,
+                                                       "scatterGather", shardId);
+                })) {
+            val merged = new SortedMergeIterator<T>(cursors.iterators(), comparator);
+            Iterators.advance(merged, start);
+            return Lists.newArrayList(Iterators.limit(merged, numRows));
+        }
+    }
+
+    /**
+     * Queries using the specified criteria across all shards one after another and returns a page of the result
+     * ordered globally by the given orders, see {@link #scatterGather(DetachedCriteria, Comparator, int, int)}. The id
+     * of the entity is used as the final tie breaker so that pages are stable. Orders can only refer to properties
+     * declared directly on the entity.
+     *
+     * @param criteria The select criteria. Must not contain any ordering of it's own.
+     * @param orders   Orders to be applied
+     * @param start    Start index in the globally ordered result
+     * @param numRows  Number of rows to return
+     * @return Rows in [start, start + numRows) of the globally ordered result
+     */
+    public List<T> scatterGather(DetachedCriteria criteria, List<Order> orders, int start, int numRows) {
+        val orderedCriteria = CriteriaUtils.copy(criteria);
+        Comparator<T> comparator = null;
+        for (Order order : withIdTieBreaker(orders)) {
+            orderedCriteria.addOrder(order);
+            val propertyComparator = propertyComparator(order.getPropertyName(), order.isAscending());
+            comparator = null == comparator ? propertyComparator : comparator.thenComparing(propertyComparator);
+        }
+        return scatterGather(orderedCriteria, comparator, start, numRows);
+    }
+
+    /**
+     * Returns a page of results from all shards using keyset (cursor) pagination. Instead of skipping rows, every
+     * shard seeks past the last row it contributed to the previous page, so each page costs a bounded index seek
+     * per shard irrespective of how deep the page is. The entity id is used as a tie breaker for the sort property.
+     * <b>Note:</b> Shards that had run out of rows are not queried for subsequent pages of the same traversal.
+     *
+     * @param criteria    The select criteria. Must not contain any ordering of it's own.
+     * @param pageRequest Sort and page details along with the token from the previous page, if any
+     * @return Page of results and token to fetch the next page
+     * @throws IllegalStateException if a returned row has a null sort property. Exclude such rows in the criteria.
+     */
+    public KeysetPage<T> scatterGather(DetachedCriteria criteria, KeysetPageRequest pageRequest) {
+        return keysetPage(criteria,
+                          pageRequest,
+                          IntStream.range(0, daos.size()).boxed().collect(Collectors.toList()),
+                          "scatterGather");
+    }
+
+    /**
+     * Returns a page of results from the shard for the parent key using keyset (cursor) pagination.
+     * Unlike {@link #select(String, DetachedCriteria, int, int)}, the cost of a page does not grow with it's depth.
+     *
+     * @param parentKey   Parent key to route the query
+     * @param criteria    The select criteria. Must not contain any ordering of it's own.
+     * @param pageRequest Sort and page details along with the token from the previous page, if any
+     * @return Page of results and token to fetch the next page
+     * @throws IllegalStateException if a returned row has a null sort property. Exclude such rows in the criteria.
+     */
+    public KeysetPage<T> select(String parentKey, DetachedCriteria criteria, KeysetPageRequest pageRequest) {
+        return keysetPage(criteria,
+                          pageRequest,
+                          Collections.singletonList(shardCalculator.shardId(parentKey)),
+                          "select");
+    }
+
+    private KeysetPage<T> keysetPage(
+            DetachedCriteria criteria,
+            KeysetPageRequest pageRequest,
+            List<Integer> shards,
+            String opType) {
+        val pageSize = pageRequest.getPageSize();
+        Preconditions.checkArgument(pageSize > 0, "Page size must be positive");
+        val sortProperty = pageRequest.getSortProperty();
+        val ascending = pageRequest.isAscending();
+        val sortField = FieldUtils.getField(entityClass, sortProperty, true);
+        Preconditions.checkArgument(null != sortField,
+                "Property " + sortProperty + " is not a field of " + entityClass.getSimpleName());
+        val token = Strings.isNullOrEmpty(pageRequest.getPageToken())
+                ? new KeysetPageToken(sortProperty, ascending)
+                : KeysetPageToken.decode(pageRequest.getPageToken());
+        Preconditions.checkArgument(token.matches(sortProperty, ascending),
+                "Page token was generated for a different sort order");
+        val comparator = propertyComparator(sortProperty, ascending)
+                .thenComparing(propertyComparator(keyField.getName(), ascending));
+
+        val shardResults = scatterGatherExecutor.execute(shards.size(), index -> {
+            final int shardId = shards.get(index);
+            if (token.getExhaustedShards().contains(shardId)) {
+                return Collections.<T>emptyList();
+            }
+            val shardCriteria = CriteriaUtils.copy(criteria);
+            val position = token.getPositions().get(shardId);
+            if (null != position) {
+                shardCriteria.add(seekPast(sortProperty,
+                                           token.value(position.get(0), ClassUtils.primitiveToWrapper(sortField.getType())),
+                                           token.value(position.get(1), ClassUtils.primitiveToWrapper(keyField.getType())),
+                                           ascending));
+            }
+            shardCriteria.addOrder(ascending ? Order.asc(sortProperty) : Order.desc(sortProperty))
+                    .addOrder(ascending ? Order.asc(keyField.getName()) : Order.desc(keyField.getName()));
+            val dao = daos.get(shardId);
+            SelectParamPriv selectParam = SelectParamPriv.<T>builder()
+                    .criteria(shardCriteria)
+                    .start(0)
+                    .numRows(pageSize)
+                    .build();
+            return transactionExecutor.execute(dao.sessionFactory, true, dao::select, selectParam, opType, shardId);
+        });
+
+        val merged = new SortedMergeIterator<T>(shardResults.stream()
+                                                        .map(List::iterator)
+                                                        .collect(Collectors.toList()),
+                                                comparator);
+        val nextToken = token.next();
+        val consumed = new int[shards.size()];
+        val items = new ArrayList<T>(pageSize);
+        while (items.size() < pageSize && merged.hasNext()) {
+            val item = merged.next();
+            val index = merged.lastSourceIndex();
+            consumed[index]++;
+            items.add(item);
+            val sortValue = readField(sortField, item);
+            Preconditions.checkState(null != sortValue,
+                                     "Keyset pagination needs a non null %s, found null for %s",
+                                     sortProperty, readField(keyField, item));
+            nextToken.getPositions().put(shards.get(index), Arrays.asList(sortValue, readField(keyField, item)));
+        }
+        for (int index = 0; index < shards.size(); index++) {
+            val shardRows = shardResults.get(index).size();
+            if (shardRows < pageSize && consumed[index] == shardRows) {
+                nextToken.getExhaustedShards().add(shards.get(index));
+            }
+        }
+        val hasMore = nextToken.getExhaustedShards().size() < shards.size();
+        return new KeysetPage<>(items, hasMore ? nextToken.encode() : null);
+    }
+
+    /**
+     * Rows after (sortValue, id) in the page order. The leading range on the sort property lets the database seek an
+     * index on (sort property, id) to the position instead of scanning, which it cannot do for the OR alone.
+     */
+    private Criterion seekPast(String sortProperty, Object sortValue, Object id, boolean ascending) {
+        val idProperty = keyField.getName();
+        return ascending
+                ? Restrictions.and(Restrictions.ge(sortProperty, sortValue),
+                                   Restrictions.or(Restrictions.gt(sortProperty, sortValue),
+                                                   Restrictions.and(Restrictions.eq(sortProperty, sortValue),
+                                                                    Restrictions.gt(idProperty, id))))
+                : Restrictions.and(Restrictions.le(sortProperty, sortValue),
+                                   Restrictions.or(Restrictions.lt(sortProperty, sortValue),
+                                                   Restrictions.and(Restrictions.eq(sortProperty, sortValue),
+                                                                    Restrictions.lt(idProperty, id))));
+    }
+
+    /**
+     * Async version of {@link #get(String, Object)}. Runs on the executor for the shard the parent key belongs to.
+     *
+     * @param parentKey Key used to locate the shard
+     * @param key       Id of the element
+     * @return Future for the element
+     */
+    public CompletableFuture<Optional<T>> getAsync(String parentKey, Object key) {
+        return async(parentKey, shardId -> () -> Optional.ofNullable(get(shardId, key, t -> t)));
+    }
+
+    /**
+     * Async version of {@link #get(String, Collection)}. Runs on the executor for the shard the parent key belongs to.
+     *
+     * @param parentKey Key used to locate the shard
+     * @param ids       Ids of the elements
+     * @return Future for the elements found
+     */
+    public CompletableFuture<List<T>> getAsync(String parentKey, Collection<?> ids) {
+        return async(parentKey, shardId -> () -> get(shardId, ids));
+    }
+
+    /**
+     * Async version of {@link #save(String, Object)}. Runs on the executor for the shard the parent key belongs to.
+     *
+     * @param parentKey Key used to locate the shard
+     * @param entity    Entity to save
+     * @return Future for the saved entity
+     */
+    public CompletableFuture<Optional<T>> saveAsync(String parentKey, T entity) {
+        return asyncWrite(parentKey, () -> save(parentKey, entity));
+    }
+
+    /**
+     * Async version of {@link #select(String, DetachedCriteria, int, int)}. Runs on the executor for the shard the
+     * parent key belongs to.
+     *
+     * @param parentKey  Key used to locate the shard
+     * @param criteria   The select criteria
+     * @param first      Index of the first row to return
+     * @param numResults Max number of rows to return
+     * @return Future for the matching elements
+     */
+    public CompletableFuture<List<T>> selectAsync(String parentKey, DetachedCriteria criteria, int first,
+                                                  int numResults) {
+        return async(parentKey, shardId -> () -> select(shardId, criteria, first, numResults, t -> t));
+    }
+
+    /**
+     * Makes the rows of every parent key on the target shard same as those on the source shard, keeping their ids.
+     * Used to move buckets, see {@link LookupDao#migrateBucket(int, int)}.
+     *
+     * @return Number of rows copied
+     */
+    int syncRows(Collection<String> parentKeys,
+                 Function<String, DetachedCriteria> rowsOf,
+                 int sourceShard,
+                 int targetShard) {
+        val source = daos.get(sourceShard);
+        val target = daos.get(targetShard);
+        int copied = 0;
+        for (String parentKey : parentKeys) {
+            val rows = transactionExecutor.execute(source.sessionFactory, true, source::selectAll,
+                                                   rowsOf.apply(parentKey), "migrateBucket", sourceShard);
+            copied += transactionExecutor.execute(target.sessionFactory, false,
+                                                  (List<T> sourceRows) -> target.replaceAll(rowsOf.apply(parentKey),
+                                                                                            sourceRows),
+                                                  rows, "migrateBucket", targetShard);
+        }
+        return copied;
+    }
+
+    /**
+     * @return Parent keys whose rows on the target shard differ from those on the source shard
+     */
+    List<String> changedParents(Collection<String> parentKeys,
+                                Function<String, DetachedCriteria> rowsOf,
+                                int sourceShard,
+                                int targetShard) {
+        val changed = new ArrayList<String>();
+        for (String parentKey : parentKeys) {
+            val sourceRows = rowsById(sourceShard, rowsOf.apply(parentKey));
+            val targetRows = rowsById(targetShard, rowsOf.apply(parentKey));
+            if (sourceRows.size() != targetRows.size()
+                    || sourceRows.entrySet()
+                    .stream()
+                    .anyMatch(row -> !EntityContent.same(daos.get(sourceShard).sessionFactory,
+                                                         row.getValue(), targetRows.get(row.getKey())))) {
+                changed.add(parentKey);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Deletes the rows of every parent key from a shard.
+     *
+     * @return Number of rows deleted
+     */
+    int deleteRows(Collection<String> parentKeys, Function<String, DetachedCriteria> rowsOf, int shardId) {
+        val dao = daos.get(shardId);
+        return parentKeys.stream()
+                .mapToInt(parentKey -> transactionExecutor.execute(dao.sessionFactory, false, dao::deleteAll,
+                                                                   rowsOf.apply(parentKey), "migrateBucket", shardId))
+                .sum();
+    }
+
+    private Map<Object, T> rowsById(int shardId, DetachedCriteria criteria) {
+        val dao = daos.get(shardId);
+        val util = dao.sessionFactory.getPersistenceUnitUtil();
+        return transactionExecutor.execute(dao.sessionFactory, true, dao::selectAll, criteria, "migrateBucket", shardId)
+                .stream()
+                .collect(Collectors.toMap(util::getIdentifier, Function.identity()));
+    }
+
+    /**
+     * Observer for locked contexts, which are routed when created but run later. Whether the bucket is being moved is
+     * checked when the context runs, see {@link ShardCalculator#writeRouted(Object, int, int, Supplier)}.
+     */
+    private TransactionObserver routedObserver(String parentKey, int bucketId, int shardId) {
+        return new TransactionObserver(observer) {
+            @Override
+            public <R> R execute(TransactionExecutionContext context, Supplier<R> supplier) {
+                return shardCalculator.writeRouted(parentKey, bucketId, shardId, () -> proceed(context, supplier));
+            }
+        };
+    }
+
+    /**
+     * Routes the parent key once and runs the call for the resulting shard on the executor for that shard.
+     */
+    private <R> CompletableFuture<R> async(String parentKey, IntFunction<Callable<R>> call) {
+        final int shardId;
+        try {
+            shardId = shardCalculator.shardId(parentKey);
+        } catch (Exception e) {
+            return ShardExecutors.failedFuture(e);
+        }
+        return shardExecutors.submit(shardId, call.apply(shardId));
+    }
+
+    /**
+     * Writes route the parent key again when they run, so that they follow buckets that move in the meantime. The
+     * executor is picked without counting the key, so that traffic is counted once per call.
+     */
+    private <R> CompletableFuture<R> asyncWrite(String parentKey, Callable<R> call) {
+        try {
+            return shardExecutors.submit(shardCalculator.shardForBucket(shardCalculator.bucketId(parentKey)), call);
+        } catch (Exception e) {
+            return ShardExecutors.failedFuture(e);
+        }
+    }
+
+    /**
+     * Saves entities in batches of saveAllBatchSize within the current transaction. The JDBC batch size of the session
+     * is raised to match, and every batch is flushed and dropped from the session, so memory use stays bounded
+     * however many entities are saved. Every batch runs through the observer chain as a saveAllBatch operation, which
+     * publishes per batch metrics. Entities with IDENTITY generated ids are still inserted one statement at a time,
+     * as hibernate cannot batch those.
+     */
+    private boolean saveInBatches(RelationalDaoPriv dao, int shardId, Collection<T> entities, boolean clearSession) {
+        val batchSize = saveAllBatchSize();
+        val session = dao.sessionFactory.getCurrentSession();
+        val previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            for (List<T> batch : Iterables.partition(entities, batchSize)) {
+                transactionExecutor.execute(dao.sessionFactory,
+                        false,
+                        (List<T> entitiesInBatch) -> dao.saveBatch(entitiesInBatch, clearSession),
+                        batch,
+                        false,
+                        "saveAllBatch",
+                        shardId);
+            }
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+        return true;
+    }
+
+    /**
+     * Progress of {@link #updateInChunks(String, DetachedCriteria, Function, ChunkedUpdateOptions)}.
+     */
+    private static final class ChunkedUpdateProgress {
+        private Object lastId;
+        private long updated;
+        private int chunks;
+        private boolean stopped;
+
+        private ChunkedUpdateProgress(Object lastId) {
+            this.lastId = lastId;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateChunksInScroll(RelationalDaoPriv dao,
+                                      int shardId,
+                                      DetachedCriteria criteria,
+                                      Function<T, T> updater,
+                                      ChunkedUpdateOptions options,
+                                      ChunkedUpdateProgress progress) {
+        val scrollParam = ScrollParamPriv.builder()
+                .criteria(chunkCriteria(criteria, progress.lastId))
+                .fetchSize(options.getFetchSize())
+                .build();
+        transactionExecutor.<ScrollableResults, ScrollParamPriv, Boolean>execute(dao.sessionFactory, false,
+                dao::scroll, scrollParam, scrollableResults -> {
+                    val session = dao.sessionFactory.getCurrentSession();
+                    int inChunk = 0;
                     try {
-                        SelectParamPriv selectParam = SelectParamPriv.<T>builder()
-                                .criteria(criteria)
-                                .start(start)
-                                .numRows(numRows)
-                                .build();
-                        return transactionExecutor.execute(dao.sessionFactory, true, dao::select, selectParam,
-                                "scatterGather", shardId);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
+                        while (scrollableResults.next() && updateRow(dao, (T) scrollableResults.get(0), updater,
+                                                                     progress)) {
+                            if (++inChunk == options.getChunkSize()) {
+                                session.flush();
+                                session.clear();
+                                progress.chunks++;
+                                inChunk = 0;
+                            }
+                        }
+                    } finally {
+                        scrollableResults.close();
                     }
-                }).flatMap(Collection::stream).collect(Collectors.toList());
+                    if (inChunk > 0) {
+                        progress.chunks++;
+                    }
+                    return true;
+                }, "updateInChunks", shardId);
+    }
+
+    private void updateChunksInTransactions(RelationalDaoPriv dao,
+                                            int shardId,
+                                            DetachedCriteria criteria,
+                                            Function<T, T> updater,
+                                            ChunkedUpdateOptions options,
+                                            ChunkedUpdateProgress progress,
+                                            Function<Supplier<Boolean>, Boolean> routedChunk) {
+        boolean hasMore = true;
+        while (hasMore && !progress.stopped) {
+            val selectParam = SelectParamPriv.builder()
+                    .criteria(chunkCriteria(criteria, progress.lastId))
+                    .start(0)
+                    .numRows(options.getChunkSize())
+                    .build();
+            val updated = progress.updated;
+            hasMore = routedChunk.apply(() -> transactionExecutor.<List<T>, SelectParamPriv, Boolean>execute(
+                    dao.sessionFactory, false, dao::select, selectParam, chunk -> {
+                        for (T entity : chunk) {
+                            if (!updateRow(dao, entity, updater, progress)) {
+                                break;
+                            }
+                        }
+                        return chunk.size() == options.getChunkSize();
+                    }, "updateInChunks", shardId));
+            if (progress.updated > updated) {
+                progress.chunks++;
+                if (null != options.getCheckpointListener()) {
+                    options.getCheckpointListener().accept(encodeCheckpoint(progress.lastId));
+                }
+            }
+        }
+    }
+
+    private boolean updateRow(RelationalDaoPriv dao, T entity, Function<T, T> updater, ChunkedUpdateProgress progress) {
+        final T newEntity = null == entity ? null : updater.apply(entity);
+        if (null == newEntity) {
+            progress.stopped = true;
+            return false;
+        }
+        val id = readField(keyField, entity);
+        dao.update(entity, newEntity);
+        progress.lastId = id;
+        progress.updated++;
+        return true;
+    }
+
+    private DetachedCriteria chunkCriteria(DetachedCriteria criteria, Object lastId) {
+        val chunkCriteria = CriteriaUtils.copy(criteria);
+        if (null != lastId) {
+            chunkCriteria.add(Restrictions.gt(keyField.getName(), lastId));
+        }
+        return chunkCriteria.addOrder(Order.asc(keyField.getName()));
+    }
+
+    private String encodeCheckpoint(Object id) {
+        try {
+            return CHECKPOINT_MAPPER.writeValueAsString(id);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not generate checkpoint", e);
+        }
+    }
+
+    private Object decodeCheckpoint(String checkpoint) {
+        try {
+            return CHECKPOINT_MAPPER.readValue(checkpoint, ClassUtils.primitiveToWrapper(keyField.getType()));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid checkpoint: " + checkpoint, e);
+        }
+    }
+
+    private int upsertInBatches(RelationalDaoPriv dao, int shardId, Collection<T> entities) {
+        int written = 0;
+        for (List<T> batch : Iterables.partition(entities, saveAllBatchSize())) {
+            written += transactionExecutor.execute(dao.sessionFactory,
+                    false,
+                    dao::upsertBatch,
+                    batch,
+                    false,
+                    "upsertAllBatch",
+                    shardId);
+        }
+        return written;
+    }
+
+    private int maxDistinctValues() {
+        return shardingOptions.getMaxDistinctValues() > 0
+                ? shardingOptions.getMaxDistinctValues()
+                : AggregationQuery.DEFAULT_MAX_DISTINCT_VALUES;
+    }
+
+    private int saveAllBatchSize() {
+        return shardingOptions.getSaveAllBatchSize() > 0
+                ? shardingOptions.getSaveAllBatchSize()
+                : DEFAULT_SAVE_ALL_BATCH_SIZE;
+    }
+
+    private int multiGetChunkSize() {
+        return shardingOptions.getMultiGetChunkSize() > 0
+                ? shardingOptions.getMultiGetChunkSize()
+                : DEFAULT_MULTI_GET_CHUNK_SIZE;
+    }
+
+    private static Object readField(Field field, Object entity) {
+        try {
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Order> withIdTieBreaker(List<Order> orders) {
+        val allOrders = Lists.newArrayList(orders);
+        if (allOrders.stream().noneMatch(order -> order.getPropertyName().equals(keyField.getName()))) {
+            allOrders.add(Order.asc(keyField.getName()));
+        }
+        return allOrders;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<T> propertyComparator(String propertyName, boolean ascending) {
+        final Field field = FieldUtils.getField(entityClass, propertyName, true);
+        Preconditions.checkArgument(null != field && Comparable.class.isAssignableFrom(ClassUtils.primitiveToWrapper(
+                field.getType())),
+                "Property " + propertyName + " is not a comparable field of " + entityClass.getSimpleName());
+        final Comparator<T> comparator = Comparator.comparing(entity -> (Comparable) readField(field, entity),
+                                                              Comparator.nullsFirst(Comparator.naturalOrder()));
+        return ascending ? comparator : comparator.reversed();
     }
 
     protected Field getKeyField() {
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.utils.TransactionHandler;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Forward only cursors open on all shards at the same time, so that sorted rows from every shard can be merged
+ * without reading any shard fully into memory. Every entity is evicted from it's session once the cursor moves past
+ * it. Sessions for all shards stay open until the cursors are closed. Cursors are opened and read on the calling
+ * thread, one shard after another, as the sessions are bound to it.
+ */
+class ShardCursors<T> implements Closeable {
+
+    private final List<TransactionHandler> transactionHandlers = new ArrayList<>();
+    private final List<ScrollableResults> cursors = new ArrayList<>();
+
+    /**
+     * @param sessionFactories Session factories for all shards
+     * @param cursorOpener     Opens a cursor on the given shard. Called with the session for the shard bound.
+     */
+    ShardCursors(List<SessionFactory> sessionFactories, IntFunction<ScrollableResults> cursorOpener) {
+        try {
+            for (int shardId = 0; shardId < sessionFactories.size(); shardId++) {
+                final TransactionHandler transactionHandler = new TransactionHandler(sessionFactories.get(shardId),
+                                                                                     true);
+                transactionHandler.beforeStart();
+                transactionHandlers.add(transactionHandler);
+                cursors.add(cursorOpener.apply(shardId));
+            }
+        } catch (RuntimeException e) {
+            close(true);
+            throw e;
+        }
+    }
+
+    /**
+     * @return An iterator over the rows of every shard, in shard order
+     */
+    List<Iterator<T>> iterators() {
+        final List<Iterator<T>> iterators = new ArrayList<>(cursors.size());
+        for (int i = 0; i < cursors.size(); i++) {
+            iterators.add(new CursorIterator(i));
+        }
+        return iterators;
+    }
+
+    @Override
+    public void close() {
+        close(false);
+    }
+
+    private void close(boolean error) {
+        RuntimeException failure = null;
+        for (int i = 0; i < transactionHandlers.size(); i++) {
+            try {
+                if (i < cursors.size()) {
+                    cursors.get(i).close();
+                }
+            } catch (RuntimeException e) {
+                failure = null == failure ? e : failure;
+            } finally {
+                try {
+                    if (error) {
+                        transactionHandlers.get(i).onError();
+                    } else {
+                        transactionHandlers.get(i).afterEnd();
+                    }
+                } catch (RuntimeException e) {
+                    failure = null == failure ? e : failure;
+                }
+            }
+        }
+        transactionHandlers.clear();
+        cursors.clear();
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    private final class CursorIterator implements Iterator<T> {
+        private final int shard;
+        private T nextItem;
+        private T lastReturned;
+        private boolean exhausted;
+
+        private CursorIterator(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            if (null != nextItem) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            if (null != lastReturned) {
+                transactionHandlers.get(shard).getSession().evict(lastReturned);
+                lastReturned = null;
+            }
+            final ScrollableResults cursor = cursors.get(shard);
+            while (cursor.next()) {
+                final T item = (T) cursor.get(0);
+                if (null != item) {
+                    nextItem = item;
+                    return true;
+                }
+            }
+            exhausted = true;
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T item = nextItem;
+            nextItem = null;
+            lastReturned = item;
+            return item;
+        }
+    }
+}
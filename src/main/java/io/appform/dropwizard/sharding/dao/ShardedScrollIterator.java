@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.dao;
+
+import io.appform.dropwizard.sharding.utils.TransactionHandler;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily iterates over matching rows on all shards, one shard at a time. Only one shard has an open session and
+ * cursor at any point. Every entity is evicted from the session once the consumer moves past it, so the persistence
+ * context does not grow with the number of rows read. The session of the last shard is closed when the iteration
+ * completes or the iterator is closed, whichever happens first.
+ */
+class ShardedScrollIterator<T> implements Iterator<T>, Closeable {
+
+    private final List<SessionFactory> sessionFactories;
+    private final IntFunction<ScrollableResults> cursorOpener;
+
+    private int currentShard = -1;
+    private TransactionHandler transactionHandler;
+    private ScrollableResults results;
+    private T nextItem;
+    private T lastReturned;
+    private boolean closed;
+
+    /**
+     * @param sessionFactories Session factories for all shards
+     * @param cursorOpener     Opens a cursor on the given shard. Called with the session for the shard bound.
+     */
+    ShardedScrollIterator(List<SessionFactory> sessionFactories, IntFunction<ScrollableResults> cursorOpener) {
+        this.sessionFactories = sessionFactories;
+        this.cursorOpener = cursorOpener;
+    }
+
+    Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                                    false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (null == nextItem) {
+            if (closed) {
+                return false;
+            }
+            if (null != results && advance()) {
+                continue;
+            }
+            closeCurrent(false);
+            if (++currentShard >= sessionFactories.size()) {
+                closed = true;
+                return false;
+            }
+            openCurrent();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T item = nextItem;
+        nextItem = null;
+        lastReturned = item;
+        return item;
+    }
+
+    @Override
+    public void close() {
+        closeCurrent(false);
+        closed = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean advance() {
+        try {
+            if (null != lastReturned) {
+                transactionHandler.getSession().evict(lastReturned);
+                lastReturned = null;
+            }
+            while (results.next()) {
+                final T item = (T) results.get(0);
+                if (null != item) {
+                    nextItem = item;
+                    return true;
+                }
+            }
+            return false;
+        } catch (RuntimeException e) {
+            closeCurrent(true);
+            closed = true;
+            throw e;
+        }
+    }
+
+    private void openCurrent() {
+        transactionHandler = new TransactionHandler(sessionFactories.get(currentShard), true);
+        transactionHandler.beforeStart();
+        try {
+            results = cursorOpener.apply(currentShard);
+        } catch (RuntimeException e) {
+            closeCurrent(true);
+            closed = true;
+            throw e;
+        }
+    }
+
+    private void closeCurrent(boolean error) {
+        lastReturned = null;
+        try {
+            if (null != results) {
+                results.close();
+            }
+        } finally {
+            results = null;
+            if (null != transactionHandler) {
+                final TransactionHandler handler = transactionHandler;
+                transactionHandler = null;
+                if (error) {
+                    handler.onError();
+                } else {
+                    handler.afterEnd();
+                }
+            }
+        }
+    }
+}
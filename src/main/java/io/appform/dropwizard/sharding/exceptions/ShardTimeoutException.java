@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a shard does not respond to a scatter-gather call in time
+ */
+@Getter
+public class ShardTimeoutException extends RuntimeException {
+    private final int shard;
+
+    public ShardTimeoutException(int shard, long timeoutMs) {
+        super(String.format("Shard %d did not respond within %d ms", shard, timeoutMs));
+        this.shard = shard;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.execution;
+
+import lombok.Value;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Result of a scatter-gather call run in tolerant mode. Contains whatever the responding shards returned within the
+ * deadline, along with the shards that did not contribute to it.
+ */
+@Value
+public class PartialResult<R> {
+    /**
+     * Result gathered from shards that responded in time
+     */
+    R result;
+
+    /**
+     * Shards for which the query failed, along with the error
+     */
+    Map<Integer, Throwable> failedShards;
+
+    /**
+     * Shards that did not respond within the deadline
+     */
+    Set<Integer> timedOutShards;
+
+    /**
+     * Shards that were not queried as they are blacklisted
+     */
+    Set<Integer> skippedShards;
+
+    /**
+     * @return true if every shard contributed to the result
+     */
+    public boolean isComplete() {
+        return failedShards.isEmpty() && timedOutShards.isEmpty() && skippedShards.isEmpty();
+    }
+
+    public <U> PartialResult<U> map(Function<? super R, ? extends U> mapper) {
+        return new PartialResult<>(mapper.apply(result), failedShards, timedOutShards, skippedShards);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.execution;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.appform.dropwizard.sharding.exceptions.ShardTimeoutException;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a call against every shard concurrently on a bounded executor and gathers the results in shard order.
+ * Latency of a fan-out is bound by the slowest shard instead of the sum over all shards.
+ * The shard call itself is expected to go through {@link TransactionExecutor} so that observers see every shard.
+ */
+@Slf4j
+public class ScatterGatherExecutor implements Managed {
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private final ExecutorService executorService;
+    private final long shardTimeoutMs;
+
+    public ScatterGatherExecutor(ExecutorService executorService, long shardTimeoutMs) {
+        this.executorService = executorService;
+        this.shardTimeoutMs = shardTimeoutMs;
+    }
+
+    /**
+     * Creates an executor with a bounded pool sized from the provided options.
+     *
+     * @param shardingOptions Bundle options. Can be null, in which case defaults are used.
+     * @param numShards       Number of shards the pool will fan out to
+     * @return A new executor
+     */
+    public static ScatterGatherExecutor create(ShardingBundleOptions shardingOptions, int numShards) {
+        val options = null != shardingOptions ? shardingOptions : new ShardingBundleOptions();
+        val parallelism = options.getScatterGatherParallelism() > 0
+                ? options.getScatterGatherParallelism()
+                : Math.max(1, numShards);
+        val queueSize = options.getScatterGatherQueueSize() > 0
+                ? options.getScatterGatherQueueSize()
+                : DEFAULT_QUEUE_SIZE;
+        val pool = new ThreadPoolExecutor(parallelism,
+                parallelism,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("db-sharding-scatter-gather-%d")
+                        .setDaemon(true)
+                        .build());
+        pool.allowCoreThreadTimeOut(true);
+        return new ScatterGatherExecutor(pool, options.getScatterGatherShardTimeoutMs());
+    }
+
+    /**
+     * Runs the provided call for all shards in [0, numShards) and returns the results indexed by shard.
+     * If any shard fails or does not respond within the configured timeout, outstanding calls are cancelled and
+     * the error is propagated.
+     *
+     * @param numShards Number of shards to fan out to
+     * @param shardCall Call to be made for a shard. Receives the shard id.
+     * @return Results in order of shard id
+     */
+    public <T> List<T> execute(int numShards, IntFunction<T> shardCall) {
+        return execute(IntStream.range(0, numShards).boxed().collect(Collectors.toList()), shardCall);
+    }
+
+    /**
+     * Runs the provided call for the given shards and returns the results in the same order as the shards.
+     * If any shard fails or does not respond within the configured timeout, outstanding calls are cancelled and
+     * the error is propagated.
+     *
+     * @param shardIds  Shards to fan out to
+     * @param shardCall Call to be made for a shard. Receives the shard id.
+     * @return Results in the order of shardIds
+     */
+    public <T> List<T> execute(List<Integer> shardIds, IntFunction<T> shardCall) {
+        return execute(shardIds.stream().mapToInt(Integer::intValue).toArray(), shardCall);
+    }
+
+    /**
+     * Same as {@link #execute(List, IntFunction)}, for callers that already hold the shard ids as primitives.
+     *
+     * @param shardIds  Shards to fan out to
+     * @param shardCall Call to be made for a shard. Receives the shard id.
+     * @return Results in the order of shardIds
+     */
+    public <T> List<T> execute(int[] shardIds, IntFunction<T> shardCall) {
+        if (shardIds.length == 1) {
+            return runInline(shardIds[0], shardCall);
+        }
+        val futures = new ArrayList<Future<T>>(shardIds.length);
+        try {
+            for (int shardId : shardIds) {
+                futures.add(executorService.submit(() -> shardCall.apply(shardId)));
+            }
+            val deadline = shardTimeoutMs > 0
+                    ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shardTimeoutMs)
+                    : Long.MAX_VALUE;
+            val results = new ArrayList<T>(shardIds.length);
+            for (int i = 0; i < shardIds.length; i++) {
+                results.add(await(futures.get(i), shardIds[i], deadline));
+            }
+            return results;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Tolerant variant of {@link #execute(int, IntFunction)}. Shards for which {@code skipShard} returns true are not
+     * queried at all. Failures and shards that do not respond within the deadline do not fail the call, they are
+     * reported in the returned {@link PartialResult} instead.
+     *
+     * @param numShards Number of shards to fan out to
+     * @param skipShard Shards to be skipped, typically the blacklisted ones
+     * @param timeoutMs Deadline for the whole call. If not positive, the configured shard timeout is used.
+     * @param shardCall Call to be made for a shard. Receives the shard id.
+     * @return Results of responding shards keyed and sorted by shard id, along with shards that did not respond
+     */
+    public <T> PartialResult<SortedMap<Integer, T>> executeTolerant(
+            int numShards,
+            IntPredicate skipShard,
+            long timeoutMs,
+            IntFunction<T> shardCall) {
+        val results = new TreeMap<Integer, T>();
+        val failed = new TreeMap<Integer, Throwable>();
+        val timedOut = new TreeSet<Integer>();
+        val skipped = new TreeSet<Integer>();
+        val futures = new TreeMap<Integer, Future<T>>();
+        try {
+            for (int shardId = 0; shardId < numShards; shardId++) {
+                if (skipShard.test(shardId)) {
+                    skipped.add(shardId);
+                    continue;
+                }
+                final int shard = shardId;
+                try {
+                    futures.put(shardId, executorService.submit(() -> shardCall.apply(shard)));
+                } catch (RejectedExecutionException e) {
+                    failed.put(shardId, e);
+                }
+            }
+            val effectiveTimeoutMs = timeoutMs > 0 ? timeoutMs : shardTimeoutMs;
+            val deadline = effectiveTimeoutMs > 0
+                    ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(effectiveTimeoutMs)
+                    : Long.MAX_VALUE;
+            for (val entry : futures.entrySet()) {
+                val shardId = entry.getKey();
+                try {
+                    results.put(shardId, deadline == Long.MAX_VALUE
+                            ? entry.getValue().get()
+                            : entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    timedOut.add(shardId);
+                } catch (ExecutionException e) {
+                    log.warn("Scatter gather call failed on shard {}", shardId, e.getCause());
+                    failed.put(shardId, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
+        }
+        return new PartialResult<>(results,
+                                   Collections.unmodifiableMap(failed),
+                                   Collections.unmodifiableSet(timedOut),
+                                   Collections.unmodifiableSet(skipped));
+    }
+
+    @Override
+    public void start() {
+        //Nothing to do here
+    }
+
+    @Override
+    public void stop() {
+        executorService.shutdownNow();
+    }
+
+    private <T> T await(Future<T> future, int shardId, long deadline) {
+        try {
+            if (deadline == Long.MAX_VALUE) {
+                return future.get();
+            }
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ShardTimeoutException(shardId, shardTimeoutMs);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> List<T> runInline(int shardId, IntFunction<T> shardCall) {
+        try {
+            return Collections.singletonList(shardCall.apply(shardId));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.execution;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.dropwizard.lifecycle.Managed;
+import lombok.val;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A bounded executor for every shard, used to run async DAO calls. Keeping the pools separate means a slow shard
+ * can only exhaust its own threads and queue, not those of the other shards.
+ */
+public class ShardExecutors implements Managed {
+    private final List<ExecutorService> executors;
+
+    public ShardExecutors(List<ExecutorService> executors) {
+        this.executors = executors;
+    }
+
+    /**
+     * Creates executors for all shards sized from the provided options.
+     *
+     * @param shardingOptions Bundle options. Can be null, in which case defaults are used.
+     * @param numShards       Number of shards
+     * @return A new set of executors
+     */
+    public static ShardExecutors create(ShardingBundleOptions shardingOptions, int numShards) {
+        val options = null != shardingOptions ? shardingOptions : new ShardingBundleOptions();
+        val parallelism = options.getAsyncParallelismPerShard() > 0
+                ? options.getAsyncParallelismPerShard()
+                : ShardingBundleOptions.DEFAULT_ASYNC_PARALLELISM_PER_SHARD;
+        val queueSize = options.getAsyncQueueSizePerShard() > 0
+                ? options.getAsyncQueueSizePerShard()
+                : ShardingBundleOptions.DEFAULT_ASYNC_QUEUE_SIZE_PER_SHARD;
+        return new ShardExecutors(IntStream.range(0, numShards)
+                                          .mapToObj(shardId -> {
+                                              val pool = new ThreadPoolExecutor(
+                                                      parallelism,
+                                                      parallelism,
+                                                      60,
+                                                      TimeUnit.SECONDS,
+                                                      new ArrayBlockingQueue<>(queueSize),
+                                                      new ThreadFactoryBuilder()
+                                                              .setNameFormat("db-sharding-async-" + shardId + "-%d")
+                                                              .setDaemon(true)
+                                                              .build());
+                                              pool.allowCoreThreadTimeOut(true);
+                                              return (ExecutorService) pool;
+                                          })
+                                          .collect(Collectors.toList()));
+    }
+
+    public Executor forShard(int shardId) {
+        return executors.get(shardId);
+    }
+
+    /**
+     * Runs the call on the executor for the shard. The returned future is completed exceptionally if the call fails
+     * or if the shard executor rejects it.
+     *
+     * @param shardId Shard the call is for
+     * @param call    The call to be made
+     * @return Future for the result of the call
+     */
+    public <T> CompletableFuture<T> submit(int shardId, Callable<T> call) {
+        val future = new CompletableFuture<T>();
+        try {
+            forShard(shardId).execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public static <T> CompletableFuture<T> failedFuture(Throwable t) {
+        val future = new CompletableFuture<T>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    @Override
+    public void start() {
+        //Nothing to do here
+    }
+
+    @Override
+    public void stop() {
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+}
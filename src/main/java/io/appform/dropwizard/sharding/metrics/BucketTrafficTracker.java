@@ -0,0 +1,229 @@
+package io.appform.dropwizard.sharding.metrics;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Preconditions;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.appform.dropwizard.sharding.sharding.ShardingKeyType;
+import lombok.Value;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Counts routed calls per bucket and tracks the most frequently routed keys, to find skew below shard level.
+ * Every bucket has it's own {@link LongAdder}. Keys are sampled and fed to a set of striped space-saving sketches,
+ * so a hot path takes a sketch lock only for one call in every sampleRate calls, and even then rarely contends.
+ */
+public class BucketTrafficTracker {
+    private static final int NUM_STRIPES = 8;
+    private static final int SKETCH_CAPACITY = 128;
+    private static final int DEFAULT_SAMPLE_RATE = 64;
+    private static final int DEFAULT_REPORT_SIZE = 10;
+    private static final long METRICS_REFRESH_SECONDS = 5;
+
+    private final LongAdder[] bucketCounts;
+    private final int sampleRate;
+    private final KeySketch[] sketches = new KeySketch[NUM_STRIPES];
+
+    /**
+     * @param numBuckets Number of buckets
+     * @param sampleRate One in these many keys is fed to the hot key sketch. 1 tracks every key.
+     */
+    public BucketTrafficTracker(int numBuckets, int sampleRate) {
+        Preconditions.checkArgument(numBuckets > 0, "Number of buckets must be positive");
+        Preconditions.checkArgument(sampleRate > 0, "Sample rate must be positive");
+        this.bucketCounts = new LongAdder[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+        this.sampleRate = sampleRate;
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            sketches[i] = new KeySketch();
+        }
+    }
+
+    public static BucketTrafficTracker create(ShardingBundleOptions shardingOptions, int numBuckets) {
+        final int sampleRate = null != shardingOptions && shardingOptions.getHotKeySampleRate() > 0
+                ? shardingOptions.getHotKeySampleRate()
+                : DEFAULT_SAMPLE_RATE;
+        return new BucketTrafficTracker(numBuckets, sampleRate);
+    }
+
+    public void record(int bucketId, Object key) {
+        if (bucketId < 0 || bucketId >= bucketCounts.length) {
+            return;
+        }
+        bucketCounts[bucketId].increment();
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            final int stripe = (int) (Thread.currentThread().getId() % NUM_STRIPES);
+            sketches[stripe].offer(key);
+        }
+    }
+
+    public long count(int bucketId) {
+        return bucketCounts[bucketId].sum();
+    }
+
+    /**
+     * @param k Number of buckets to return
+     * @return Buckets with the most calls, busiest first
+     */
+    public List<HotBucket> hotBuckets(int k) {
+        return IntStream.range(0, bucketCounts.length)
+                .mapToObj(bucketId -> new HotBucket(bucketId, bucketCounts[bucketId].sum()))
+                .filter(bucket -> bucket.getCount() > 0)
+                .sorted(Comparator.comparingLong(HotBucket::getCount).reversed())
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param k Number of keys to return
+     * @return Keys with the most calls, busiest first. Counts are estimates scaled up by the sample rate.
+     */
+    public List<HotKey> hotKeys(int k) {
+        final Map<String, Long> merged = new HashMap<>();
+        for (KeySketch sketch : sketches) {
+            sketch.snapshot().forEach((key, count) -> merged.merge(key, count, Long::sum));
+        }
+        return merged.entrySet()
+                .stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(k)
+                .map(entry -> new HotKey(entry.getKey(), entry.getValue() * sampleRate))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return Calls on the busiest bucket divided by the mean calls per bucket. 1 means traffic is spread evenly.
+     */
+    public double skew() {
+        long total = 0;
+        long max = 0;
+        for (LongAdder counter : bucketCounts) {
+            final long count = counter.sum();
+            total += count;
+            max = Math.max(max, count);
+        }
+        return total == 0 ? 0 : (double) max * bucketCounts.length / total;
+    }
+
+    public void reset() {
+        for (LongAdder counter : bucketCounts) {
+            counter.reset();
+        }
+        for (KeySketch sketch : sketches) {
+            sketch.reset();
+        }
+    }
+
+    /**
+     * Publishes numeric gauges under the given prefix: skew, and for every rank up to the report size the id and call
+     * count of the bucket (hot_buckets.rank_N.bucket, hot_buckets.rank_N.count) and the estimated call count of the
+     * key (hot_keys.rank_N.count) at that rank. Keys are left out of metrics, use {@link
+     * io.appform.dropwizard.sharding.admin.BucketTrafficTask} to see them. Rankings are recomputed at most once every
+     * few seconds. Does nothing if there is no registry.
+     */
+    public void registerMetrics(MetricRegistry metricRegistry, String prefix, ShardingBundleOptions shardingOptions) {
+        if (null == metricRegistry) {
+            return;
+        }
+        final int topK = null != shardingOptions && shardingOptions.getHotKeyReportSize() > 0
+                ? shardingOptions.getHotKeyReportSize()
+                : DEFAULT_REPORT_SIZE;
+        final CachedGauge<List<HotBucket>> buckets = new CachedGauge<List<HotBucket>>(METRICS_REFRESH_SECONDS,
+                                                                                       TimeUnit.SECONDS) {
+            @Override
+            protected List<HotBucket> loadValue() {
+                return hotBuckets(topK);
+            }
+        };
+        final CachedGauge<List<HotKey>> keys = new CachedGauge<List<HotKey>>(METRICS_REFRESH_SECONDS,
+                                                                              TimeUnit.SECONDS) {
+            @Override
+            protected List<HotKey> loadValue() {
+                return hotKeys(topK);
+            }
+        };
+        metricRegistry.gauge(MetricRegistry.name(prefix, "skew"), () -> this::skew);
+        for (int i = 0; i < topK; i++) {
+            final int index = i;
+            final String rank = "rank_" + (i + 1);
+            metricRegistry.gauge(MetricRegistry.name(prefix, "hot_buckets", rank, "bucket"),
+                                 () -> ranked(buckets, index, HotBucket::getBucketId, -1));
+            metricRegistry.gauge(MetricRegistry.name(prefix, "hot_buckets", rank, "count"),
+                                 () -> ranked(buckets, index, HotBucket::getCount, 0L));
+            metricRegistry.gauge(MetricRegistry.name(prefix, "hot_keys", rank, "count"),
+                                 () -> ranked(keys, index, HotKey::getEstimatedCount, 0L));
+        }
+    }
+
+    private static <E, V> Gauge<V> ranked(Gauge<List<E>> ranking, int index, Function<E, V> value, V absent) {
+        return () -> {
+            final List<E> entries = ranking.getValue();
+            return index < entries.size() ? value.apply(entries.get(index)) : absent;
+        };
+    }
+
+    @Value
+    public static class HotBucket {
+        int bucketId;
+        long count;
+    }
+
+    @Value
+    public static class HotKey {
+        String key;
+        long estimatedCount;
+    }
+
+    /**
+     * Space-saving sketch: tracks at most {@link #SKETCH_CAPACITY} keys, a new key replaces the least frequent one
+     * and inherits it's count. Keys that are truly frequent stay in the sketch.
+     */
+    private static final class KeySketch {
+        private final Map<String, long[]> counts = new HashMap<>();
+
+        synchronized void offer(Object key) {
+            final String name = key instanceof byte[] ? ShardingKeyType.toKey((byte[]) key) : String.valueOf(key);
+            final long[] count = counts.get(name);
+            if (null != count) {
+                count[0]++;
+                return;
+            }
+            if (counts.size() < SKETCH_CAPACITY) {
+                counts.put(name, new long[]{1});
+                return;
+            }
+            Map.Entry<String, long[]> min = null;
+            for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+                if (null == min || entry.getValue()[0] < min.getValue()[0]) {
+                    min = entry;
+                }
+            }
+            final long evicted = min.getValue()[0];
+            counts.remove(min.getKey());
+            counts.put(name, new long[]{evicted + 1});
+        }
+
+        synchronized Map<String, Long> snapshot() {
+            final Map<String, Long> snapshot = new HashMap<>(counts.size());
+            counts.forEach((key, count) -> snapshot.put(key, count[0]));
+            return snapshot;
+        }
+
+        synchronized void reset() {
+            counts.clear();
+        }
+    }
+}
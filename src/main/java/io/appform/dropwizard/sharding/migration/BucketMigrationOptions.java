@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.migration;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tuning for moving a bucket between shards.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BucketMigrationOptions {
+    /**
+     * Number of rows read from the source and written to the target in one transaction
+     */
+    @Builder.Default
+    private int batchSize = 500;
+
+    /**
+     * Delete the rows of the bucket from the source shard once the move has been verified. Only the instance that
+     * moved the bucket routes it to the target shard, so leave this off unless every instance writing to the bucket
+     * has the move applied, or other instances will read the bucket from the emptied source shard.
+     */
+    @Builder.Default
+    private boolean deleteFromSource = false;
+
+    /**
+     * Rows of relational daos that move with the lookup elements of the bucket. The bucket is switched over for all
+     * daos of the bundle, so rows of the bucket that are not listed here are left behind on the source shard.
+     */
+    @Builder.Default
+    private List<RelatedRows<?>> relatedRows = Collections.emptyList();
+}
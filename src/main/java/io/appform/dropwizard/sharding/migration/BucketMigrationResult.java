@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.migration;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Outcome of moving a bucket between shards.
+ */
+@Value
+@Builder
+public class BucketMigrationResult {
+    int bucketId;
+    int sourceShard;
+    int targetShard;
+    /**
+     * Version of the bucket map in which the bucket points to the target shard
+     */
+    long bucketMapVersion;
+    /**
+     * Elements copied to the target shard, not counting related rows or elements copied again after being written
+     */
+    long copiedRows;
+    /**
+     * Elements found different from the source shard, with their related rows, when compared before the switch over.
+     * They were copied again.
+     */
+    long mismatchedRows;
+    /**
+     * Rows of the bucket on the source shard that could not be found on the target shard after the move
+     */
+    long missingRows;
+    /**
+     * Rows deleted from the source shard. Zero if verification failed or deletion was not requested.
+     */
+    long deletedRows;
+
+    public boolean isVerified() {
+        return missingRows == 0;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.migration;
+
+import io.appform.dropwizard.sharding.dao.RelationalDao;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.hibernate.criterion.DetachedCriteria;
+
+import java.util.function.Function;
+
+/**
+ * Rows of a relational dao that are stored with the lookup elements of a bucket, and move with them. The rows are
+ * found through the keys of the lookup elements, which are their parent keys.
+ */
+@Value
+@AllArgsConstructor(staticName = "of")
+public class RelatedRows<T> {
+    RelationalDao<T> dao;
+    /**
+     * Criteria selecting the rows of a parent key
+     */
+    Function<String, DetachedCriteria> rowsOf;
+}
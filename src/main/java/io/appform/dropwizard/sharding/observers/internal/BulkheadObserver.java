@@ -0,0 +1,102 @@
+package io.appform.dropwizard.sharding.observers.internal;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.appform.dropwizard.sharding.config.BulkheadConfig;
+import io.appform.dropwizard.sharding.exceptions.ShardBulkheadFullException;
+import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
+import io.appform.dropwizard.sharding.observers.TransactionObserver;
+import lombok.val;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits concurrent transactions per shard using a semaphore for every shard name. Calls beyond the limit wait for
+ * up to {@link BulkheadConfig#getMaxWaitMs()} and then fail with {@link ShardBulkheadFullException}.
+ * A thread already holding a permit for a shard does not take another one, so nested calls made from inside a
+ * {@link io.appform.dropwizard.sharding.dao.LockedContext} do not deadlock. For every shard, the number of calls
+ * in flight and waiting is published as gauges and rejections as a meter.
+ */
+public final class BulkheadObserver extends TransactionObserver {
+    private static final String METRIC_PREFIX = "db.sharding.bulkhead";
+
+    private final BulkheadConfig config;
+    private final MetricRegistry metricRegistry;
+    private final Map<String, ShardBulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final ThreadLocal<Set<String>> heldShards = ThreadLocal.withInitial(HashSet::new);
+
+    public BulkheadObserver(TransactionObserver next, BulkheadConfig config, MetricRegistry metricRegistry) {
+        super(next);
+        this.config = config;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public <T> T execute(TransactionExecutionContext context, Supplier<T> supplier) {
+        val shardName = context.getShardName();
+        val held = heldShards.get();
+        if (held.contains(shardName)) {
+            return proceed(context, supplier);
+        }
+        val bulkhead = bulkheads.computeIfAbsent(shardName, ShardBulkhead::new);
+        bulkhead.acquire();
+        held.add(shardName);
+        try {
+            return proceed(context, supplier);
+        } finally {
+            held.remove(shardName);
+            bulkhead.release();
+        }
+    }
+
+    private final class ShardBulkhead {
+        private final String shardName;
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Meter rejected;
+
+        private ShardBulkhead(String shardName) {
+            this.shardName = shardName;
+            this.permits = new Semaphore(config.getMaxConcurrentCallsPerShard());
+            val prefix = MetricRegistry.name(METRIC_PREFIX, shardName.replace(".", "_"));
+            metricRegistry.gauge(MetricRegistry.name(prefix, "inflight"),
+                                 () -> (Gauge<Integer>) () -> config.getMaxConcurrentCallsPerShard()
+                                         - permits.availablePermits());
+            metricRegistry.gauge(MetricRegistry.name(prefix, "queued"), () -> (Gauge<Integer>) queued::get);
+            this.rejected = metricRegistry.meter(MetricRegistry.name(prefix, "rejected"));
+        }
+
+        void acquire() {
+            if (permits.tryAcquire()) {
+                return;
+            }
+            boolean acquired = false;
+            if (config.getMaxWaitMs() > 0) {
+                queued.incrementAndGet();
+                try {
+                    acquired = permits.tryAcquire(config.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    queued.decrementAndGet();
+                }
+            }
+            if (!acquired) {
+                rejected.mark();
+                throw new ShardBulkheadFullException(shardName, config.getMaxConcurrentCallsPerShard());
+            }
+        }
+
+        void release() {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.appform.dropwizard.sharding.observers.internal;
+
+import io.appform.dropwizard.sharding.ShardInfoProvider;
+import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
+import io.appform.dropwizard.sharding.observers.TransactionObserver;
+import io.appform.dropwizard.sharding.sharding.ShardLoadProvider;
+import lombok.val;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Counts transactions in flight on every shard, including calls waiting on a bulkhead, and exposes the count as
+ * the shard load. Only the outermost call on a shard is counted on a thread, so calls nested inside a transaction on
+ * the same shard do not inflate the load.
+ */
+public final class ShardLoadObserver extends TransactionObserver implements ShardLoadProvider {
+    private final AtomicInteger[] inflight;
+    private final Map<String, AtomicInteger> inflightByShardName;
+    private final ThreadLocal<Set<String>> countedShards = ThreadLocal.withInitial(HashSet::new);
+
+    public ShardLoadObserver(TransactionObserver next, ShardInfoProvider shardInfoProvider, int numShards) {
+        super(next);
+        this.inflight = new AtomicInteger[numShards];
+        this.inflightByShardName = new HashMap<>(numShards * 2);
+        for (int shardId = 0; shardId < numShards; shardId++) {
+            inflight[shardId] = new AtomicInteger();
+            inflightByShardName.put(shardInfoProvider.shardName(shardId), inflight[shardId]);
+        }
+    }
+
+    @Override
+    public <T> T execute(TransactionExecutionContext context, Supplier<T> supplier) {
+        val shardName = context.getShardName();
+        val counter = inflightByShardName.get(shardName);
+        val counted = countedShards.get();
+        if (null == counter || counted.contains(shardName)) {
+            return proceed(context, supplier);
+        }
+        counter.incrementAndGet();
+        counted.add(shardName);
+        try {
+            return proceed(context, supplier);
+        } finally {
+            counted.remove(shardName);
+            counter.decrementAndGet();
+        }
+    }
+
+    @Override
+    public double load(int shardId) {
+        return shardId >= 0 && shardId < inflight.length
+               ? inflight[shardId].get()
+               : 0;
+    }
+}
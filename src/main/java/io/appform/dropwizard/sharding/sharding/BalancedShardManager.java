@@ -24,7 +24,6 @@ import com.google.common.collect.TreeRangeMap;
 import lombok.Builder;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
 
 /**
  * Manages shard to bucket mapping.
@@ -37,6 +36,8 @@ public class BalancedShardManager extends ShardManager {
     private final int numShards;
 
     private RangeMap<Integer, Integer> buckets = TreeRangeMap.create();
+    @ToString.Exclude
+    private volatile int[] bucketToShard;
 
     @Builder
     public BalancedShardManager(int numShards) {
@@ -69,6 +70,7 @@ public class BalancedShardManager extends ShardManager {
                 .stream()
                 .allMatch(range -> (range.upperEndpoint() - range.lowerEndpoint() + 1) == interval));
         buckets.putAll(assignedBuckets);
+        bucketToShard = bucketTable(buckets, numBuckets());
         log.info("Buckets to shard allocation: {}", buckets);
     }
 
@@ -86,11 +88,11 @@ public class BalancedShardManager extends ShardManager {
     protected int shardForBucketImpl(int bucketId) {
         Preconditions.checkArgument(bucketId >= MIN_BUCKET && bucketId <= MAX_BUCKET,
                 "Bucket id can only be in the range of [1-1000] (inclusive)");
-        val entry = buckets.getEntry(bucketId);
-        if (null == entry) {
+        final int shard = bucketToShard[bucketId];
+        if (shard < 0) {
             throw new IllegalAccessError("Bucket not mapped to any shard");
         }
-        return entry.getValue();
+        return shard;
     }
 
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Versioned, immutable set of buckets that have been moved away from the shard the {@link ShardManager} assigns
+ * them to. Every change produces a new instance with a higher version, so readers holding an instance always see a
+ * consistent map.
+ */
+public final class BucketMap {
+    private final long version;
+    private final int[] movedTo;
+
+    private BucketMap(long version, int[] movedTo) {
+        this.version = version;
+        this.movedTo = movedTo;
+    }
+
+    /**
+     * @param numBuckets Number of buckets
+     * @return Map with no moved buckets
+     */
+    public static BucketMap empty(int numBuckets) {
+        final int[] movedTo = new int[numBuckets];
+        Arrays.fill(movedTo, -1);
+        return new BucketMap(0, movedTo);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return version == 0;
+    }
+
+    /**
+     * @param bucketId Bucket id
+     * @return Shard the bucket has been moved to, -1 if it has not been moved
+     */
+    public int shardFor(int bucketId) {
+        return bucketId >= 0 && bucketId < movedTo.length ? movedTo[bucketId] : -1;
+    }
+
+    /**
+     * @return Moved buckets and the shards they have been moved to, ordered by bucket
+     */
+    public Map<Integer, Integer> moves() {
+        final Map<Integer, Integer> moves = new TreeMap<>();
+        for (int bucketId = 0; bucketId < movedTo.length; bucketId++) {
+            if (movedTo[bucketId] >= 0) {
+                moves.put(bucketId, movedTo[bucketId]);
+            }
+        }
+        return Collections.unmodifiableMap(moves);
+    }
+
+    /**
+     * @param bucketId Bucket to move
+     * @param shardId  Shard to move the bucket to
+     * @return New map with the bucket moved
+     */
+    public BucketMap withMove(int bucketId, int shardId) {
+        final int[] updated = movedTo.clone();
+        updated[bucketId] = shardId;
+        return new BucketMap(version + 1, updated);
+    }
+
+    @Override
+    public String toString() {
+        return "BucketMap(version=" + version + ", moves=" + moves() + ")";
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bucket being moved to another shard. Writes to the bucket hold the read lock and record their key, the switch
+ * over to the target shard holds the write lock. Created by {@link BucketRouting#startMove}.
+ */
+public final class BucketMove {
+    @Getter
+    private final int bucketId;
+    @Getter
+    private final int sourceShard;
+    @Getter
+    private final int targetShard;
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<Object> writtenKeys = ConcurrentHashMap.newKeySet();
+    volatile boolean switched;
+
+    BucketMove(int bucketId, int sourceShard, int targetShard) {
+        this.bucketId = bucketId;
+        this.sourceShard = sourceShard;
+        this.targetShard = targetShard;
+    }
+
+    public boolean isSwitched() {
+        return switched;
+    }
+
+    /**
+     * Runs a write to the bucket. Until the bucket is switched over, the key is recorded to be synced to the target
+     * shard, even if the write fails.
+     *
+     * @param key    Key written to
+     * @param writer Write, routed to the current shard of the bucket when it runs
+     * @return Result of the write
+     */
+    public <R> R write(Object key, Supplier<R> writer) {
+        lock.readLock().lock();
+        try {
+            return writer.get();
+        } finally {
+            if (!switched) {
+                writtenKeys.add(key);
+            }
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Syncs the keys written since the last call. Keys that fail to sync are kept for the next call.
+     *
+     * @param sync Syncs a key, returns false if that failed
+     * @return Number of keys that failed to sync
+     */
+    public int syncWrittenKeys(Predicate<Object> sync) {
+        int failed = 0;
+        for (Object key : new ArrayList<>(writtenKeys)) {
+            writtenKeys.remove(key);
+            if (!sync.test(key)) {
+                writtenKeys.add(key);
+                failed++;
+            }
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Bucket to shard routing shared by all daos of a bundle, so that the rows of a bucket stay on the same shard for
+ * every entity. Holds the current {@link BucketMap} and the buckets being moved to another shard.
+ * <p>
+ * Writes enter the bucket they write to. A write that enters a bucket being moved runs through the
+ * {@link BucketMove} instead, so that the key is copied again before the switch over. A move waits for writes that
+ * entered it's bucket before it was started, so no write is missed.
+ */
+@Slf4j
+public final class BucketRouting {
+    private final int numBuckets;
+    private final AtomicIntegerArray writers;
+    private final AtomicReferenceArray<BucketMove> moves;
+    private volatile BucketMap bucketMap;
+
+    public BucketRouting(int numBuckets) {
+        this.numBuckets = numBuckets;
+        this.writers = new AtomicIntegerArray(numBuckets);
+        this.moves = new AtomicReferenceArray<>(numBuckets);
+        this.bucketMap = BucketMap.empty(numBuckets);
+    }
+
+    /**
+     * @return Buckets moved away from the shards assigned to them by the shard manager
+     */
+    public BucketMap bucketMap() {
+        return bucketMap;
+    }
+
+    /**
+     * Routes a bucket to the given shard from now on. Data is not moved.
+     *
+     * @param bucketId Bucket to move
+     * @param shardId  Shard to route the bucket to
+     * @return Version of the bucket map after the move
+     */
+    public synchronized long moveBucket(int bucketId, int shardId) {
+        checkBucket(bucketId);
+        Preconditions.checkArgument(shardId >= 0, "Invalid shard id: " + shardId);
+        bucketMap = bucketMap.withMove(bucketId, shardId);
+        log.info("Bucket {} moved to shard {}. Bucket map version: {}", bucketId, shardId, bucketMap.version());
+        return bucketMap.version();
+    }
+
+    /**
+     * Starts moving a bucket. Returns once all writes that entered the bucket before the move was started are done.
+     *
+     * @param bucketId       Bucket to move
+     * @param targetShard    Shard to move the bucket to
+     * @param shardForBucket Current shard of a bucket
+     * @return The move, to be ended with {@link #endMove(BucketMove)}
+     */
+    public BucketMove startMove(int bucketId, int targetShard, IntUnaryOperator shardForBucket) {
+        final BucketMove move;
+        synchronized (this) {
+            checkBucket(bucketId);
+            Preconditions.checkState(null == moves.get(bucketId), "Bucket " + bucketId + " is already being moved");
+            final int sourceShard = shardForBucket.applyAsInt(bucketId);
+            Preconditions.checkArgument(sourceShard != targetShard,
+                                        "Bucket " + bucketId + " is already on shard " + targetShard);
+            move = new BucketMove(bucketId, sourceShard, targetShard);
+            moves.set(bucketId, move);
+        }
+        while (writers.get(bucketId) > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return move;
+    }
+
+    /**
+     * Switches a bucket over to the target shard of it's move. Writes to the bucket are held off while keys written
+     * since the last sync are synced. If any of them cannot be synced, the bucket is not switched over.
+     *
+     * @param move Move of the bucket
+     * @param sync Makes the element for a key on the target shard same as the one on the source shard. Returns false
+     *             if that failed.
+     * @return Version of the bucket map in which the bucket points to the target shard
+     * @throws IllegalStateException if keys could not be synced
+     */
+    public long switchOver(BucketMove move, Predicate<Object> sync) {
+        move.lock.writeLock().lock();
+        try {
+            final int failed = move.syncWrittenKeys(sync);
+            Preconditions.checkState(failed == 0, "Could not sync " + failed + " elements of bucket "
+                    + move.getBucketId() + " to shard " + move.getTargetShard() + ", not switching over");
+            final long version = moveBucket(move.getBucketId(), move.getTargetShard());
+            move.switched = true;
+            return version;
+        } finally {
+            move.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends a move, whether or not the bucket was switched over.
+     */
+    public void endMove(BucketMove move) {
+        moves.compareAndSet(move.getBucketId(), move, null);
+    }
+
+    /**
+     * Counts a write to the bucket until {@link #exit(int)} is called. If the bucket is being moved, the write is not
+     * counted and the move is returned, the write must then run through {@link BucketMove#write}.
+     *
+     * @param bucketId Bucket written to
+     * @return The move of the bucket, null if it is not being moved
+     */
+    public BucketMove enter(int bucketId) {
+        writers.incrementAndGet(bucketId);
+        final BucketMove move = moves.get(bucketId);
+        if (null != move) {
+            writers.decrementAndGet(bucketId);
+        }
+        return move;
+    }
+
+    public void exit(int bucketId) {
+        writers.decrementAndGet(bucketId);
+    }
+
+    private void checkBucket(int bucketId) {
+        Preconditions.checkArgument(bucketId >= 0 && bucketId < numBuckets, "Invalid bucket id: " + bucketId);
+    }
+}
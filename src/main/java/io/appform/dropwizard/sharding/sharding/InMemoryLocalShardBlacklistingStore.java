@@ -17,8 +17,10 @@
 
 package io.appform.dropwizard.sharding.sharding;
 
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  *
@@ -26,15 +28,18 @@ import java.util.concurrent.ConcurrentMap;
 public class InMemoryLocalShardBlacklistingStore implements ShardBlacklistingStore {
 
     private final ConcurrentMap<Integer, Boolean> blacklisted = new ConcurrentHashMap<>();
+    private final List<ShardBlacklistingListener> listeners = new CopyOnWriteArrayList<>();
 
     @Override
     public void blacklist(int shardId) {
         blacklisted.put(shardId, true);
+        listeners.forEach(listener -> listener.blacklistingChanged(shardId, true));
     }
 
     @Override
     public void unblacklist(int shardId) {
         blacklisted.remove(shardId);
+        listeners.forEach(listener -> listener.blacklistingChanged(shardId, false));
     }
 
     @Override
@@ -42,4 +47,9 @@ public class InMemoryLocalShardBlacklistingStore implements ShardBlacklistingSto
         return blacklisted.getOrDefault(shardId, false);
     }
 
+    @Override
+    public void registerListener(ShardBlacklistingListener listener) {
+        listeners.add(listener);
+    }
+
 }
@@ -24,7 +24,6 @@ import com.google.common.collect.TreeRangeMap;
 import lombok.Builder;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
 
 /**
  * Manages shard to bucket mapping.
@@ -37,6 +36,8 @@ public class LegacyShardManager extends ShardManager {
     private final int numShards;
 
     private RangeMap<Integer, Integer> buckets = TreeRangeMap.create();
+    @ToString.Exclude
+    private volatile int[] bucketToShard;
 
     public LegacyShardManager(int numShards) {
         this(numShards, new InMemoryLocalShardBlacklistingStore());
@@ -72,6 +73,7 @@ public class LegacyShardManager extends ShardManager {
                 "There is an issue in shard allocation. " +
                         "Not all shards have been allocated to. Please contact devs.");
         buckets.putAll(assignedBuckets);
+        bucketToShard = bucketTable(buckets, numBuckets());
         log.info("Buckets to shard allocation: {}", buckets);
     }
 
@@ -89,11 +91,11 @@ public class LegacyShardManager extends ShardManager {
     @Override
     protected int shardForBucketImpl(int bucketId) {
         Preconditions.checkArgument(bucketId >= MIN_BUCKET && bucketId <= MAX_BUCKET, "Bucket id can only be in the range of [1-1000] (inclusive)");
-        val entry = buckets.getEntry(bucketId);
-        if (null == entry) {
+        final int shard = bucketToShard[bucketId];
+        if (shard < 0) {
             throw new IllegalAccessError("Bucket not mapped to any shard");
         }
-        return entry.getValue();
+        return shard;
     }
 
 
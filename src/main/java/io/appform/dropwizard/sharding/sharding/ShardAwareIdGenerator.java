@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.sharding;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates time ordered 64 bit ids that carry the bucket they belong to, so that the bucket can be read back from
+ * the id with a shift and a mask instead of hashing it. Layout, from the most significant bit:
+ * <pre>
+ * | 0 | 41 bits millis since 2016-01-01 UTC | bucket | node id | sequence |
+ * </pre>
+ * The bucket field is just wide enough for the buckets of the shard manager and always ends at bit 22, so
+ * {@link #bucketId(long)} does not depend on the node id width. Ids from one generator are unique and ordered by
+ * time to the millisecond, and strictly increasing for any one bucket. When the sequence for a millisecond runs
+ * out, the generator borrows the next millisecond instead of waiting, and if the clock moves back it keeps counting
+ * from the last id it handed out. Run one generator per process and give every process a distinct node id, otherwise
+ * processes can hand out the same id for the same bucket.
+ */
+public class ShardAwareIdGenerator {
+    public static final long EPOCH = 1451606400000L;
+
+    private static final int TIMESTAMP_BITS = 41;
+    private static final int BUCKET_END = 63 - TIMESTAMP_BITS;
+    private static final int MIN_SEQUENCE_BITS = 4;
+
+    private final ShardManager shardManager;
+    private final int bucketShift;
+    private final int nodeIdShift;
+    private final int sequenceBits;
+    private final long nodeId;
+    private final LongSupplier clock;
+    private final AtomicLong lastState = new AtomicLong();
+
+    public ShardAwareIdGenerator(ShardManager shardManager) {
+        this(shardManager, 0, 0);
+    }
+
+    public ShardAwareIdGenerator(ShardManager shardManager, int nodeId, int nodeIdBits) {
+        this(shardManager, nodeId, nodeIdBits, System::currentTimeMillis);
+    }
+
+    ShardAwareIdGenerator(ShardManager shardManager, int nodeId, int nodeIdBits, LongSupplier clock) {
+        this.shardManager = shardManager;
+        this.bucketShift = BUCKET_END - bucketBits(shardManager.numBuckets());
+        this.sequenceBits = bucketShift - nodeIdBits;
+        Preconditions.checkArgument(nodeIdBits >= 0 && sequenceBits >= MIN_SEQUENCE_BITS,
+                                    "Node id can use at most %s bits", bucketShift - MIN_SEQUENCE_BITS);
+        Preconditions.checkArgument(nodeId >= 0 && nodeId < (1L << nodeIdBits),
+                                    "Node id %s does not fit in %s bits", nodeId, nodeIdBits);
+        this.nodeIdShift = sequenceBits;
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    /**
+     * @param bucketId Bucket the id should route to
+     * @return A new id
+     */
+    public long nextId(int bucketId) {
+        Preconditions.checkArgument(bucketId >= 0 && bucketId < shardManager.numBuckets(),
+                                    "Invalid bucket %s", bucketId);
+        final long state = nextState();
+        final long timestamp = state >>> sequenceBits;
+        final long sequence = state & ((1L << sequenceBits) - 1);
+        return (timestamp << BUCKET_END)
+                | ((long) bucketId << bucketShift)
+                | (nodeId << nodeIdShift)
+                | sequence;
+    }
+
+    /**
+     * @return A new id on a random bucket
+     */
+    public long nextId() {
+        return nextId(ThreadLocalRandom.current().nextInt(shardManager.numBuckets()));
+    }
+
+    /**
+     * Generates an id that routes to the same bucket as an existing key, for example a child that has to live on
+     * the same shard as its parent.
+     *
+     * @param key       Key to colocate with
+     * @param extractor Extractor used to route the key
+     * @return A new id
+     */
+    public <K> long nextId(K key, BucketIdExtractor<K> extractor) {
+        return nextId(extractor.bucketId(key));
+    }
+
+    /**
+     * @param id Id generated by any {@link ShardAwareIdGenerator} for the same shard manager
+     * @return Bucket embedded in the id
+     */
+    public int bucketId(long id) {
+        return bucketId(id, shardManager.numBuckets());
+    }
+
+    /**
+     * @param id Id generated by a {@link ShardAwareIdGenerator}
+     * @return Epoch millis at which the id was generated
+     */
+    public static long timestamp(long id) {
+        return (id >>> BUCKET_END) + EPOCH;
+    }
+
+    /**
+     * Decodes the bucket of an id for a shard manager with the given number of buckets.
+     *
+     * @throws IllegalArgumentException if the id does not hold a valid bucket
+     */
+    public static int bucketId(long id, int numBuckets) {
+        final int bits = bucketBits(numBuckets);
+        final int bucketId = (int) ((id >>> (BUCKET_END - bits)) & ((1L << bits) - 1));
+        if (bucketId >= numBuckets || id < 0) {
+            throw new IllegalArgumentException("Id " + id + " was not generated by a ShardAwareIdGenerator");
+        }
+        return bucketId;
+    }
+
+    private long nextState() {
+        final long now = (clock.getAsLong() - EPOCH) << sequenceBits;
+        while (true) {
+            final long last = lastState.get();
+            final long next = now > last ? now : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static int bucketBits(int numBuckets) {
+        return 32 - Integer.numberOfLeadingZeros(numBuckets - 1);
+    }
+}
@@ -28,4 +28,14 @@ public interface ShardBlacklistingStore {
 
     boolean blacklisted(int shardId);
 
+    /**
+     * Stores that can push changes should notify the listener whenever a shard is blacklisted or unblacklisted,
+     * including changes made by other processes. Changes from stores that do not are picked up by polling.
+     *
+     * @param listener Listener to be notified
+     */
+    default void registerListener(ShardBlacklistingListener listener) {
+        //Push not supported by default
+    }
+
 }
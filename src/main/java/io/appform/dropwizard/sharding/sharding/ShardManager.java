@@ -17,24 +17,48 @@
 
 package io.appform.dropwizard.sharding.sharding;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.collect.RangeMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
+import io.dropwizard.lifecycle.Managed;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
- *
+ * Maps buckets to shards and keeps track of blacklisted shards.
+ * Blacklisting state is held as an immutable bitset that is replaced on every change, so routing reads it
+ * without locks or boxing. The bitset is read from the {@link ShardBlacklistingStore} on first use, when the listener
+ * for changes pushed by the store is registered too. Changes made through this class or pushed by the store are
+ * visible right away. Changes the store cannot push are picked up by reading it again in the background, when the
+ * snapshot is used after being read more than {@value #BLACKLIST_POLL_INTERVAL_SECONDS} seconds ago. Once started,
+ * the store is polled at that interval instead.
  */
 @ToString
 @Slf4j
-public abstract class ShardManager {
+public abstract class ShardManager implements Managed {
+    private static final long BLACKLIST_POLL_INTERVAL_SECONDS = 15;
 
     private final ShardBlacklistingStore shardBlacklistingStore;
-    private LoadingCache<Integer, Boolean> blackListedShards;
+    @ToString.Exclude
+    private volatile long[] blacklistedShards;
+    @ToString.Exclude
+    private long blacklistVersion;
+    @ToString.Exclude
+    private volatile long blacklistReadAt;
+    @ToString.Exclude
+    private final AtomicBoolean blacklistRefreshing = new AtomicBoolean();
+    @ToString.Exclude
+    long blacklistRefreshIntervalNanos = TimeUnit.SECONDS.toNanos(BLACKLIST_POLL_INTERVAL_SECONDS);
+    @ToString.Exclude
+    private volatile ScheduledExecutorService blacklistPoller;
 
     abstract public int numBuckets();
 
@@ -44,51 +68,224 @@ public abstract class ShardManager {
 
     protected ShardManager(ShardBlacklistingStore shardBlacklistingStore) {
         this.shardBlacklistingStore = shardBlacklistingStore;
-        this.blackListedShards = Caffeine.newBuilder()
-                .maximumSize(10_000)
-                .expireAfterWrite(1, TimeUnit.MINUTES)
-                .refreshAfterWrite(15, TimeUnit.SECONDS)
-                .build(shardBlacklistingStore::blacklisted);
+    }
+
+    /**
+     * Starts polling the blacklisting store.
+     */
+    @Override
+    public synchronized void start() {
+        blacklistSnapshot();
+        if (null == shardBlacklistingStore || null != blacklistPoller) {
+            return;
+        }
+        blacklistPoller = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("db-sharding-blacklist-poller-%d")
+                        .setDaemon(true)
+                        .build());
+        blacklistPoller.scheduleWithFixedDelay(this::reconcileBlacklist,
+                                               BLACKLIST_POLL_INTERVAL_SECONDS,
+                                               BLACKLIST_POLL_INTERVAL_SECONDS,
+                                               TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (null != blacklistPoller) {
+            blacklistPoller.shutdownNow();
+            blacklistPoller = null;
+        }
+    }
+
+    /**
+     * Flattens a bucket range allocation into a table indexed by bucket id, so that routing a bucket is a single
+     * array load. Buckets not mapped to any shard are set to -1. The returned table must not be modified once
+     * published; build a new one and swap it in instead.
+     *
+     * @param buckets    Allocation of bucket ranges to shards
+     * @param numBuckets Total number of buckets
+     * @return Shard for every bucket id
+     */
+    protected static int[] bucketTable(RangeMap<Integer, Integer> buckets, int numBuckets) {
+        final int[] table = new int[numBuckets];
+        Arrays.fill(table, -1);
+        buckets.asMapOfRanges().forEach((range, shard) -> {
+            final int start = Math.max(0, range.lowerEndpoint());
+            final int end = Math.min(numBuckets - 1, range.upperEndpoint());
+            for (int bucket = start; bucket <= end; bucket++) {
+                table[bucket] = shard;
+            }
+        });
+        return table;
     }
 
     public int shardForBucket(int bucketId) {
         final int shard = shardForBucketImpl(bucketId);
-        final Boolean isBlacklisted = blackListedShards.get(shard);
-        if (null != isBlacklisted && isBlacklisted) {
+        if (isBlacklistedInSnapshot(shard)) {
             throw new ShardBlacklistedException(shard);
         }
         return shard;
     }
 
-    public boolean isMappedToValidShard(int bucketId) {
-        final int shard = shardForBucketImpl(bucketId);
-        final Boolean isBlacklisted = blackListedShards.get(shard);
-        if (null != isBlacklisted && isBlacklisted) {
-            return false;
+    /**
+     * Routes a batch of buckets against a single read of the blacklist snapshot.
+     *
+     * @param bucketIds Buckets to route
+     * @return Shard for every bucket, in the same order
+     * @throws ShardBlacklistedException if any of the buckets maps to a blacklisted shard
+     */
+    public int[] shardsForBuckets(int[] bucketIds) {
+        final long[] snapshot = blacklistSnapshot();
+        final int[] shards = new int[bucketIds.length];
+        for (int i = 0; i < bucketIds.length; i++) {
+            final int shard = shardForBucketImpl(bucketIds[i]);
+            if (isBlacklisted(snapshot, shard)) {
+                throw new ShardBlacklistedException(shard);
+            }
+            shards[i] = shard;
         }
-        return true;
+        return shards;
+    }
+
+    public boolean isMappedToValidShard(int bucketId) {
+        return !isBlacklistedInSnapshot(shardForBucketImpl(bucketId));
     }
 
     public void blacklistShard(int shardId) {
         if (shardId >= 0 && shardId < numShards()) {
             shardBlacklistingStore.blacklist(shardId);
-            blackListedShards.refresh(shardId);
+            updateBlacklist(shardId, true);
         }
     }
 
     public boolean isBlacklisted(int shardId) {
-        if (shardId >= 0
+        return shardId >= 0
                 && shardId < numShards()
-                && shardBlacklistingStore != null) {
-            return shardBlacklistingStore.blacklisted(shardId);
-        }
-        return false;
+                && isBlacklistedInSnapshot(shardId);
     }
 
     public void unblacklistShard(int shardId) {
         if (shardId >= 0 && shardId < numShards()) {
             shardBlacklistingStore.unblacklist(shardId);
-            blackListedShards.refresh(shardId);
+            updateBlacklist(shardId, false);
+        }
+    }
+
+    /**
+     * Rebuilds the blacklist snapshot from the store. Runs periodically in the background. The rebuilt snapshot is
+     * dropped if the blacklist was changed while the store was being read; the next run will pick it up.
+     */
+    void reconcileBlacklist() {
+        try {
+            final long version;
+            synchronized (this) {
+                blacklistSnapshot();
+                version = blacklistVersion;
+                blacklistReadAt = System.nanoTime();
+            }
+            final long[] snapshot = readBlacklist();
+            synchronized (this) {
+                if (version == blacklistVersion) {
+                    blacklistedShards = snapshot;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error reading blacklisted shards from store", e);
+        }
+    }
+
+    private long[] blacklistSnapshot() {
+        final long[] snapshot = blacklistedShards;
+        if (null == snapshot) {
+            return loadBlacklist();
         }
+        if (null == blacklistPoller
+                && null != shardBlacklistingStore
+                && System.nanoTime() - blacklistReadAt > blacklistRefreshIntervalNanos) {
+            refreshBlacklist();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reconciles the blacklist on the common pool, so that routing does not wait for the store. Only one refresh
+     * runs at a time.
+     */
+    private void refreshBlacklist() {
+        if (!blacklistRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    reconcileBlacklist();
+                } finally {
+                    blacklistRefreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            blacklistRefreshing.set(false);
+            log.error("Error scheduling blacklist refresh", e);
+        }
+    }
+
+    /**
+     * Registers for changes pushed by the store, then reads the blacklist from it. Runs once, on first use, as the
+     * number of shards is not known while the base class is being constructed.
+     */
+    private synchronized long[] loadBlacklist() {
+        if (null == blacklistedShards) {
+            long[] snapshot = new long[0];
+            if (null != shardBlacklistingStore) {
+                shardBlacklistingStore.registerListener(this::updateBlacklist);
+                blacklistReadAt = System.nanoTime();
+                try {
+                    snapshot = readBlacklist();
+                } catch (Exception e) {
+                    log.error("Error reading blacklisted shards from store", e);
+                }
+            }
+            blacklistedShards = snapshot;
+        }
+        return blacklistedShards;
+    }
+
+    private long[] readBlacklist() {
+        final long[] snapshot = new long[words(numShards())];
+        for (int shardId = 0; shardId < numShards(); shardId++) {
+            if (shardBlacklistingStore.blacklisted(shardId)) {
+                snapshot[shardId >>> 6] |= 1L << shardId;
+            }
+        }
+        return snapshot;
+    }
+
+    private synchronized void updateBlacklist(int shardId, boolean blacklisted) {
+        if (shardId < 0) {
+            return;
+        }
+        final long[] current = blacklistSnapshot();
+        final long[] updated = Arrays.copyOf(current, Math.max(current.length, words(shardId + 1)));
+        if (blacklisted) {
+            updated[shardId >>> 6] |= 1L << shardId;
+        } else {
+            updated[shardId >>> 6] &= ~(1L << shardId);
+        }
+        blacklistedShards = updated;
+        blacklistVersion++;
+    }
+
+    private boolean isBlacklistedInSnapshot(int shardId) {
+        return isBlacklisted(blacklistSnapshot(), shardId);
+    }
+
+    private static boolean isBlacklisted(long[] snapshot, int shardId) {
+        final int word = shardId >>> 6;
+        return word < snapshot.length && (snapshot[word] & (1L << shardId)) != 0;
+    }
+
+    private static int words(int numShards) {
+        return (numShards + 63) >>> 6;
     }
 }
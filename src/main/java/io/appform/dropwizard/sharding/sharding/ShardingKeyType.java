@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import io.appform.dropwizard.sharding.sharding.impl.ByteArrayBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.EmbeddedBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.LongBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.UUIDBucketIdExtractor;
+
+/**
+ * Type of the values held in the string keys of an entity. DAOs take keys as strings, for entities whose keys are
+ * numbers, UUIDs or binary values this decides how the key is hashed. Numbers and UUIDs are decoded without
+ * allocation. The raw value is hashed, so a key is routed to the same bucket as the typed value would be by
+ * {@link LongBucketIdExtractor}, {@link UUIDBucketIdExtractor} or {@link ByteArrayBucketIdExtractor}.
+ */
+public enum ShardingKeyType {
+    /**
+     * Key is hashed as text. This is the default.
+     */
+    STRING {
+        @Override
+        public BucketIdExtractor<String> extractor(ShardManager shardManager) {
+            return new ConsistentHashBucketIdExtractor<>(shardManager);
+        }
+    },
+    /**
+     * Key is the decimal representation of a long.
+     */
+    LONG {
+        @Override
+        public BucketIdExtractor<String> extractor(ShardManager shardManager) {
+            final LongBucketIdExtractor extractor = new LongBucketIdExtractor(shardManager);
+            return key -> extractor.bucketId(Long.parseLong(key));
+        }
+    },
+    /**
+     * Key is the string representation of a UUID.
+     */
+    UUID {
+        @Override
+        public BucketIdExtractor<String> extractor(ShardManager shardManager) {
+            final UUIDBucketIdExtractor extractor = new UUIDBucketIdExtractor(shardManager);
+            return key -> {
+                if (!isCanonicalUUID(key)) {
+                    return extractor.bucketId(java.util.UUID.fromString(key));
+                }
+                return extractor.bucketId(hexToLong(key, 0, 8) << 32
+                                                  | hexToLong(key, 9, 13) << 16
+                                                  | hexToLong(key, 14, 18),
+                                          hexToLong(key, 19, 23) << 48
+                                                  | hexToLong(key, 24, 36));
+            };
+        }
+    },
+    /**
+     * Key is the lower case hex representation of a binary value, see {@link #toKey(byte[])}. Upper case digits are
+     * accepted as well.
+     */
+    BYTES {
+        @Override
+        public BucketIdExtractor<String> extractor(ShardManager shardManager) {
+            final ByteArrayBucketIdExtractor extractor = new ByteArrayBucketIdExtractor(shardManager);
+            return key -> extractor.bucketId(fromHex(key));
+        }
+    },
+    /**
+     * Key is the decimal representation of an id generated by {@link ShardAwareIdGenerator}. The bucket is read
+     * from the id instead of being hashed.
+     */
+    SHARD_AWARE_ID {
+        @Override
+        public BucketIdExtractor<String> extractor(ShardManager shardManager) {
+            final EmbeddedBucketIdExtractor extractor = new EmbeddedBucketIdExtractor(shardManager);
+            return key -> extractor.bucketId(Long.parseLong(key));
+        }
+    };
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * @param shardManager Shard manager for the bundle
+     * @return Extractor that computes buckets for keys of this type
+     */
+    public abstract BucketIdExtractor<String> extractor(ShardManager shardManager);
+
+    /**
+     * @param key Binary key
+     * @return String form of a binary key as stored in the key column of {@link #BYTES} entities
+     */
+    public static String toKey(byte[] key) {
+        final char[] hex = new char[key.length * 2];
+        for (int i = 0; i < key.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(key[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[key[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static boolean isCanonicalUUID(String key) {
+        if (key.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            final char c = key.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hexToLong(String key, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = (value << 4) | Character.digit(key.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static byte[] fromHex(String key) {
+        if (key.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid binary key: " + key);
+        }
+        final byte[] bytes = new byte[key.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(key.charAt(2 * i), 16);
+            final int low = Character.digit(key.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid binary key: " + key);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Manages shard to bucket mapping for shards of different capacities. Supports any number of shards and assigns
+ * every shard a contiguous range of buckets in proportion to it's weight. Shards get equal weights till
+ * {@link #updateWeights(List)} is called.
+ * <b>Note:</b> Changing weights moves buckets between shards without moving their data. Weights are meant to be set
+ * once, before any data is written, and kept the same from then on.
+ */
+@ToString
+@Slf4j
+public class WeightedShardManager extends ShardManager {
+    private static final int NUM_BUCKETS = 1024;
+
+    private final int numShards;
+
+    private volatile List<Integer> weights;
+    private volatile RangeMap<Integer, Integer> buckets;
+    @ToString.Exclude
+    private volatile int[] bucketToShard;
+
+    public WeightedShardManager(int numShards) {
+        this(numShards, new InMemoryLocalShardBlacklistingStore());
+    }
+
+    public WeightedShardManager(int numShards, ShardBlacklistingStore shardBlacklistingStore) {
+        this(Collections.nCopies(numShards, 1), shardBlacklistingStore);
+    }
+
+    public WeightedShardManager(List<Integer> weights, ShardBlacklistingStore shardBlacklistingStore) {
+        super(shardBlacklistingStore);
+        Preconditions.checkArgument(null != weights && !weights.isEmpty() && weights.size() <= NUM_BUCKETS,
+                                    "Number of shards must be between 1 and " + NUM_BUCKETS);
+        this.numShards = weights.size();
+        updateWeights(weights);
+    }
+
+    /**
+     * Reassigns buckets to shards in proportion to the given weights. Routing switches over to the new assignment
+     * atomically.
+     *
+     * @param weights Weight for every shard, in order of shard id. Must not be negative and must not all be zero.
+     */
+    public synchronized void updateWeights(List<Integer> weights) {
+        Preconditions.checkArgument(null != weights && weights.size() == numShards,
+                                    "Exactly " + numShards + " weights are needed");
+        Preconditions.checkArgument(weights.stream().allMatch(weight -> null != weight && weight >= 0),
+                                    "Weights must not be negative");
+        final long totalWeight = weights.stream().mapToLong(Integer::longValue).sum();
+        Preconditions.checkArgument(totalWeight > 0, "At least one shard must have a positive weight");
+
+        //Largest remainder allocation, ties go to the lower shard
+        final int[] counts = new int[numShards];
+        final long[] remainders = new long[numShards];
+        int allocated = 0;
+        for (int shard = 0; shard < numShards; shard++) {
+            final long share = weights.get(shard) * (long) NUM_BUCKETS;
+            counts[shard] = (int) (share / totalWeight);
+            remainders[shard] = share % totalWeight;
+            allocated += counts[shard];
+        }
+        for (; allocated < NUM_BUCKETS; allocated++) {
+            int next = 0;
+            for (int shard = 1; shard < numShards; shard++) {
+                if (remainders[shard] > remainders[next]) {
+                    next = shard;
+                }
+            }
+            counts[next]++;
+            remainders[next] = -1;
+        }
+
+        final RangeMap<Integer, Integer> assignedBuckets = TreeRangeMap.create();
+        int start = 0;
+        for (int shard = 0; shard < numShards; shard++) {
+            if (counts[shard] > 0) {
+                log.trace("Assigning {} to {} to shard {}", start, start + counts[shard] - 1, shard);
+                assignedBuckets.put(Range.closed(start, start + counts[shard] - 1), shard);
+                start += counts[shard];
+            }
+        }
+        this.bucketToShard = bucketTable(assignedBuckets, NUM_BUCKETS);
+        this.buckets = assignedBuckets;
+        this.weights = ImmutableList.copyOf(weights);
+        log.info("Weights: {} Buckets to shard allocation: {}", weights, assignedBuckets);
+    }
+
+    public List<Integer> weights() {
+        return weights;
+    }
+
+    @Override
+    public int numBuckets() {
+        return NUM_BUCKETS;
+    }
+
+    @Override
+    public int numShards() {
+        return numShards;
+    }
+
+    @Override
+    protected int shardForBucketImpl(int bucketId) {
+        Preconditions.checkArgument(bucketId >= 0 && bucketId < NUM_BUCKETS,
+                                    "Bucket id can only be in the range of [0-1023] (inclusive)");
+        final int shard = bucketToShard[bucketId];
+        if (shard < 0) {
+            throw new IllegalAccessError("Bucket not mapped to any shard");
+        }
+        return shard;
+    }
+}
@@ -17,14 +17,13 @@
 
 package io.appform.dropwizard.sharding.sharding.impl;
 
-import com.google.common.hash.Hashing;
 import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
-
-import java.nio.charset.StandardCharsets;
+import io.appform.dropwizard.sharding.utils.MurmurHash3;
 
 /**
  * Generates bucket id on the basis of murmur128 of the key.
+ * {@link CharSequence} keys are hashed directly, other keys are hashed using their string representation.
  */
 public class ConsistentHashBucketIdExtractor<T> implements BucketIdExtractor<T> {
     private final ShardManager shardManager;
@@ -35,7 +34,7 @@ public class ConsistentHashBucketIdExtractor<T> implements BucketIdExtractor<T>
 
     @Override
     public int bucketId(T id) {
-        int hashKey = Hashing.murmur3_128().hashString(id.toString(), StandardCharsets.UTF_8).asInt();
+        int hashKey = MurmurHash3.hash128AsInt(id instanceof CharSequence ? (CharSequence) id : id.toString());
         hashKey *= hashKey < 0 ? -1 : 1;
 
         return hashKey % shardManager.numBuckets();
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.sharding.impl;
+
+import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.ShardAwareIdGenerator;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+
+/**
+ * Reads the bucket embedded in ids generated by {@link ShardAwareIdGenerator}. Use {@link #bucketId(long)} to
+ * avoid boxing.
+ */
+public class EmbeddedBucketIdExtractor implements BucketIdExtractor<Long> {
+    private final ShardManager shardManager;
+
+    public EmbeddedBucketIdExtractor(ShardManager shardManager) {
+        this.shardManager = shardManager;
+    }
+
+    @Override
+    public int bucketId(Long id) {
+        return bucketId(id.longValue());
+    }
+
+    public int bucketId(long id) {
+        return ShardAwareIdGenerator.bucketId(id, shardManager.numBuckets());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.sharding.impl;
+
+import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
+import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.ShardLoadProvider;
+import io.appform.dropwizard.sharding.sharding.ShardManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Places keys on a random bucket, preferring less loaded shards. Two random buckets are picked and the one on the
+ * shard with the lower load wins (power of two choices). Buckets on blacklisted shards lose to any other bucket.
+ * Like {@link RandomBucketIdExtractor}, this is only usable for entities whose bucket is stored alongside them.
+ */
+public class LoadAwareBucketIdExtractor<T> implements BucketIdExtractor<T> {
+    private final ShardManager shardManager;
+    private final ShardLoadProvider loadProvider;
+
+    public LoadAwareBucketIdExtractor(ShardManager shardManager, ShardLoadProvider loadProvider) {
+        this.shardManager = shardManager;
+        this.loadProvider = loadProvider;
+    }
+
+    @Override
+    public int bucketId(T key) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int numBuckets = shardManager.numBuckets();
+        final int first = random.nextInt(numBuckets);
+        final int second = random.nextInt(numBuckets);
+        return load(second) < load(first) ? second : first;
+    }
+
+    private double load(int bucketId) {
+        if (!shardManager.isMappedToValidShard(bucketId)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        try {
+            return loadProvider.load(shardManager.shardForBucket(bucketId));
+        } catch (ShardBlacklistedException e) {
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+}
@@ -20,14 +20,13 @@ package io.appform.dropwizard.sharding.sharding.impl;
 import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
 
-import java.security.SecureRandom;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Generates a random bucket id.
+ * Generates a random bucket id. Uses {@link ThreadLocalRandom} so that concurrent inserts do not contend on a
+ * shared generator.
  */
 public class RandomBucketIdExtractor<T> implements BucketIdExtractor<T> {
-    private Random random = new SecureRandom(Long.toBinaryString(System.currentTimeMillis()).getBytes());
     private final ShardManager shardManager;
 
     public RandomBucketIdExtractor(ShardManager shardManager) {
@@ -36,6 +35,6 @@ public class RandomBucketIdExtractor<T> implements BucketIdExtractor<T> {
 
     @Override
     public int bucketId(T key) {
-        return random.nextInt(shardManager.numBuckets());
+        return ThreadLocalRandom.current().nextInt(shardManager.numBuckets());
     }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.hibernate.criterion.DetachedCriteria;
+
+/**
+ * Utility methods to work with hibernate criteria.
+ */
+public class CriteriaUtils {
+    private CriteriaUtils() {
+    }
+
+    /**
+     * A {@link DetachedCriteria} binds the session to the wrapped criteria when it gets executed, so the same object
+     * cannot be executed on multiple shards at the same time. This returns an independent deep copy that can be.
+     *
+     * @param criteria Criteria to copy
+     * @return Deep copy of the criteria
+     */
+    public static DetachedCriteria copy(DetachedCriteria criteria) {
+        return SerializationUtils.clone(criteria);
+    }
+}
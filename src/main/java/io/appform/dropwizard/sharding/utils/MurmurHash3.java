@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.utils;
+
+/**
+ * Murmur3 x64 128 bit hash (seed 0) computed without creating intermediate byte arrays or hash code objects.
+ * Produces the same values as Guava's {@code Hashing.murmur3_128()}: character sequences are hashed over their UTF-8
+ * encoding like {@code hashString(input, StandardCharsets.UTF_8)}, including replacing unpaired surrogates with '?'
+ * as {@link String#getBytes(java.nio.charset.Charset)} does, and longs are hashed as little endian bytes like
+ * {@code hashLong} and {@code putLong}.
+ */
+public class MurmurHash3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private MurmurHash3() {
+    }
+
+    /**
+     * @param input Input to be hashed
+     * @return Lower 32 bits of the 128 bit hash of the UTF-8 encoded input
+     */
+    public static int hash128AsInt(CharSequence input) {
+        long h1 = 0;
+        long h2 = 0;
+        long k1 = 0;
+        long k2 = 0;
+        int buffered = 0;
+        long length = 0;
+        final int numChars = input.length();
+        for (int i = 0; i < numChars; i++) {
+            final char c = input.charAt(i);
+            int encoded;
+            int numBytes;
+            if (c < 0x80) {
+                encoded = c;
+                numBytes = 1;
+            } else if (c < 0x800) {
+                encoded = (0xC0 | (c >>> 6))
+                        | ((0x80 | (c & 0x3F)) << 8);
+                numBytes = 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c)
+                        && i + 1 < numChars
+                        && Character.isLowSurrogate(input.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, input.charAt(++i));
+                    encoded = (0xF0 | (codePoint >>> 18))
+                            | ((0x80 | ((codePoint >>> 12) & 0x3F)) << 8)
+                            | ((0x80 | ((codePoint >>> 6) & 0x3F)) << 16)
+                            | ((0x80 | (codePoint & 0x3F)) << 24);
+                    numBytes = 4;
+                } else {
+                    encoded = '?';
+                    numBytes = 1;
+                }
+            } else {
+                encoded = (0xE0 | (c >>> 12))
+                        | ((0x80 | ((c >>> 6) & 0x3F)) << 8)
+                        | ((0x80 | (c & 0x3F)) << 16);
+                numBytes = 3;
+            }
+            for (int b = 0; b < numBytes; b++, buffered++) {
+                final long value = (encoded >>> (8 * b)) & 0xFFL;
+                if (buffered < 8) {
+                    k1 |= value << (8 * buffered);
+                } else {
+                    k2 |= value << (8 * (buffered - 8));
+                }
+                if (buffered == 15) {
+                    h1 = mixH1(h1, h2, k1);
+                    h2 = mixH2(h2, h1, k2);
+
+                    k1 = 0;
+                    k2 = 0;
+                    buffered = -1;
+                    length += 16;
+                }
+            }
+        }
+        length += buffered;
+        return finish(h1 ^ mixK1(k1), h2 ^ mixK2(k2), length);
+    }
+
+    /**
+     * @param value Input to be hashed
+     * @return Lower 32 bits of the 128 bit hash of the little endian bytes of the value
+     */
+    public static int hash128AsInt(long value) {
+        return finish(mixK1(value), 0, 8);
+    }
+
+    /**
+     * Hashes two longs, for example the halves of a {@link java.util.UUID}, as one 16 byte block.
+     *
+     * @param first  First eight bytes of input
+     * @param second Last eight bytes of input
+     * @return Lower 32 bits of the 128 bit hash of the little endian bytes of both values
+     */
+    public static int hash128AsInt(long first, long second) {
+        final long h1 = mixH1(0, 0, first);
+        return finish(h1, mixH2(0, h1, second), 16);
+    }
+
+    /**
+     * @param input Input to be hashed
+     * @return Lower 32 bits of the 128 bit hash of the input
+     */
+    public static int hash128AsInt(byte[] input) {
+        long h1 = 0;
+        long h2 = 0;
+        final int blocks = input.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            h1 = mixH1(h1, h2, littleEndianLong(input, i * 16, 8));
+            h2 = mixH2(h2, h1, littleEndianLong(input, i * 16 + 8, 8));
+        }
+        final int tail = blocks * 16;
+        final int remaining = input.length - tail;
+        final long k1 = littleEndianLong(input, tail, Math.min(remaining, 8));
+        final long k2 = remaining > 8 ? littleEndianLong(input, tail + 8, remaining - 8) : 0;
+        return finish(h1 ^ mixK1(k1), h2 ^ mixK2(k2), input.length);
+    }
+
+    private static long littleEndianLong(byte[] input, int offset, int numBytes) {
+        long value = 0;
+        for (int i = 0; i < numBytes; i++) {
+            value |= (input[offset + i] & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+
+    private static long mixH1(long h1, long h2, long k1) {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        return h1 * 5 + 0x52dce729;
+    }
+
+    private static long mixH2(long h2, long h1, long k2) {
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        return h2 * 5 + 0x38495ab5;
+    }
+
+    private static int finish(long h1, long h2, long length) {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return (int) h1;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
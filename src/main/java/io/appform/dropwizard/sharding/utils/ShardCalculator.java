@@ -17,10 +17,23 @@
 
 package io.appform.dropwizard.sharding.utils;
 
+import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
+import io.appform.dropwizard.sharding.metrics.BucketTrafficTracker;
 import io.appform.dropwizard.sharding.sharding.BucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.BucketMap;
+import io.appform.dropwizard.sharding.sharding.BucketMove;
+import io.appform.dropwizard.sharding.sharding.BucketRouting;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
 /**
  * Utility class for calculating shards.
  */
@@ -29,19 +42,261 @@ public class ShardCalculator<T> {
 
     private final ShardManager shardManager;
     private final BucketIdExtractor<T> extractor;
+    private final BucketTrafficTracker trafficTracker;
+    private final BucketRouting routing;
 
     public ShardCalculator(ShardManager shardManager, BucketIdExtractor<T> extractor) {
+        this(shardManager, extractor, null);
+    }
+
+    /**
+     * @param trafficTracker Tracker to count every routed key against it's bucket. Nothing is counted if null.
+     */
+    public ShardCalculator(ShardManager shardManager,
+                           BucketIdExtractor<T> extractor,
+                           BucketTrafficTracker trafficTracker) {
+        this(shardManager, extractor, trafficTracker, new BucketRouting(shardManager.numBuckets()));
+    }
+
+    /**
+     * @param trafficTracker Tracker to count every routed key against it's bucket. Nothing is counted if null.
+     * @param routing        Bucket routing, shared by all calculators whose keys must stay on the same shard
+     */
+    public ShardCalculator(ShardManager shardManager,
+                           BucketIdExtractor<T> extractor,
+                           BucketTrafficTracker trafficTracker,
+                           BucketRouting routing) {
         this.shardManager = shardManager;
         this.extractor = extractor;
+        this.trafficTracker = trafficTracker;
+        this.routing = routing;
     }
 
     public int shardId(T key) {
-        int bucketId = extractor.bucketId(key);
-        return shardManager.shardForBucket(bucketId);
+        return shardForBucket(routing.bucketMap(), trackedBucketId(key));
+    }
+
+    /**
+     * @param bucketId Bucket id
+     * @return Shard the bucket is currently routed to
+     */
+    public int shardForBucket(int bucketId) {
+        return shardForBucket(routing.bucketMap(), bucketId);
+    }
+
+    public int bucketId(T key) {
+        return extractor.bucketId(key);
+    }
+
+    /**
+     * Buckets a key that a write is routed with and counts it against the bucket. Extractors like
+     * {@link io.appform.dropwizard.sharding.sharding.impl.RandomBucketIdExtractor} return a different bucket on every
+     * call, so keep the bucket and pass it to {@link #shardForBucket(int)} and
+     * {@link #writeRouted(Object, int, int, Supplier)}.
+     *
+     * @param key Key to route
+     * @return Bucket the key is routed with
+     */
+    public int routedBucketId(T key) {
+        return trackedBucketId(key);
+    }
+
+    /**
+     * @return Buckets moved away from the shards assigned to them by the shard manager
+     */
+    public BucketMap bucketMap() {
+        return routing.bucketMap();
+    }
+
+    public BucketRouting routing() {
+        return routing;
+    }
+
+    /**
+     * Routes a bucket to the given shard from now on. Data is not moved.
+     *
+     * @param bucketId Bucket to move
+     * @param shardId  Shard to route the bucket to
+     * @return Version of the bucket map after the move
+     */
+    public long moveBucket(int bucketId, int shardId) {
+        return routing.moveBucket(bucketId, shardId);
+    }
+
+    /**
+     * Starts moving a bucket from it's current shard. See {@link BucketRouting#startMove}.
+     */
+    public BucketMove startMove(int bucketId, int targetShard) {
+        return routing.startMove(bucketId, targetShard, this::shardForBucket);
+    }
+
+    /**
+     * Runs a write on the shard the key routes to. If the bucket of the key is being moved, the write runs through
+     * the move so that it reaches the target shard.
+     *
+     * @param key    Key to route
+     * @param writer Write to run on a shard
+     * @return Result of the write
+     */
+    public <R> R write(T key, IntFunction<R> writer) {
+        final int bucketId = trackedBucketId(key);
+        final BucketMove move = routing.enter(bucketId);
+        if (null != move) {
+            return move.write(key, () -> writer.apply(shardForBucket(bucketId)));
+        }
+        try {
+            return writer.apply(shardForBucket(bucketId));
+        } finally {
+            routing.exit(bucketId);
+        }
+    }
+
+    /**
+     * Runs a write that was routed to a shard earlier, like the transactions of a locked context. Same as
+     * {@link #write(Object, IntFunction)}, but fails if the bucket of the key is no longer on that shard.
+     *
+     * @param key      Key the write was routed with
+     * @param bucketId Bucket the write was routed with, see {@link #routedBucketId(Object)}
+     * @param shardId  Shard the write was routed to
+     * @param writer   Write to run
+     * @return Result of the write
+     * @throws IllegalStateException if the bucket has been moved to another shard. The operation can be retried.
+     */
+    public <R> R writeRouted(T key, int bucketId, int shardId, Supplier<R> writer) {
+        final Supplier<R> checked = () -> {
+            final int current = shardForBucket(bucketId);
+            if (current != shardId) {
+                throw new IllegalStateException("Element " + key + " has moved to shard " + current
+                                                        + ". Retry the operation.");
+            }
+            return writer.get();
+        };
+        final BucketMove move = routing.enter(bucketId);
+        if (null != move) {
+            return move.write(key, checked);
+        }
+        try {
+            return checked.get();
+        } finally {
+            routing.exit(bucketId);
+        }
+    }
+
+    /**
+     * Runs a write for many keys. Keys in buckets that are not being moved are written as one batch, and those buckets
+     * cannot start moving until the batch is done. Keys in buckets that are being moved are handed over separately,
+     * write them one at a time with {@link #write(Object, IntFunction)}.
+     *
+     * @param keys   Keys to write
+     * @param writer Gets the keys to write as a batch and the keys in buckets being moved
+     * @return Result of the write
+     */
+    public <R> R writeBatch(Collection<T> keys, BiFunction<List<T>, List<T>, R> writer) {
+        final BitSet entered = new BitSet();
+        final BitSet moving = new BitSet();
+        final List<T> batch = new ArrayList<>(keys.size());
+        final List<T> moved = new ArrayList<>();
+        try {
+            for (T key : keys) {
+                final int bucketId = extractor.bucketId(key);
+                if (!entered.get(bucketId) && !moving.get(bucketId)) {
+                    if (null == routing.enter(bucketId)) {
+                        entered.set(bucketId);
+                    } else {
+                        moving.set(bucketId);
+                    }
+                }
+                if (moving.get(bucketId)) {
+                    moved.add(key);
+                } else {
+                    batch.add(key);
+                }
+            }
+            return writer.apply(batch, moved);
+        } finally {
+            entered.stream().forEach(routing::exit);
+        }
+    }
+
+    /**
+     * Routes a batch of keys. The blacklist is read once for the whole batch.
+     *
+     * @param keys Keys to route
+     * @return Shard id for every key, in the same order
+     * @throws io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException if any key maps to a blacklisted
+     *                                                                             shard
+     */
+    public int[] shardIds(List<T> keys) {
+        final int[] buckets = new int[keys.size()];
+        int i = 0;
+        for (T key : keys) {
+            buckets[i++] = trackedBucketId(key);
+        }
+        return shardsForBuckets(buckets);
+    }
+
+    /**
+     * Partitions keys by the shard they route to. The blacklist is read once for the whole batch. Duplicate keys
+     * are retained.
+     *
+     * @param keys Keys to route
+     * @return Keys grouped by shard
+     * @throws io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException if any key maps to a blacklisted
+     *                                                                             shard
+     */
+    public ShardPartition<T> groupByShard(Collection<T> keys) {
+        final Object[] keyArray = keys.toArray();
+        final int[] buckets = new int[keyArray.length];
+        for (int i = 0; i < keyArray.length; i++) {
+            @SuppressWarnings("unchecked") final T key = (T) keyArray[i];
+            buckets[i] = trackedBucketId(key);
+        }
+        return ShardPartition.of(keyArray, shardsForBuckets(buckets));
     }
 
     public boolean isOnValidShard(T key) {
-        int bucketId = extractor.bucketId(key);
-        return shardManager.isMappedToValidShard(bucketId);
+        final int bucketId = extractor.bucketId(key);
+        final int movedTo = routing.bucketMap().shardFor(bucketId);
+        return movedTo < 0
+                ? shardManager.isMappedToValidShard(bucketId)
+                : !shardManager.isBlacklisted(movedTo);
+    }
+
+    public boolean isBlacklisted(int shardId) {
+        return shardManager.isBlacklisted(shardId);
+    }
+
+    private int trackedBucketId(T key) {
+        return tracked(extractor.bucketId(key), key);
+    }
+
+    private int tracked(int bucketId, Object key) {
+        if (null != trafficTracker) {
+            trafficTracker.record(bucketId, key);
+        }
+        return bucketId;
+    }
+
+    private int[] shardsForBuckets(int[] buckets) {
+        final BucketMap current = routing.bucketMap();
+        if (current.isEmpty()) {
+            return shardManager.shardsForBuckets(buckets);
+        }
+        final int[] shards = new int[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            shards[i] = shardForBucket(current, buckets[i]);
+        }
+        return shards;
+    }
+
+    private int shardForBucket(BucketMap current, int bucketId) {
+        final int movedTo = current.shardFor(bucketId);
+        if (movedTo < 0) {
+            return shardManager.shardForBucket(bucketId);
+        }
+        if (shardManager.isBlacklisted(movedTo)) {
+            throw new ShardBlacklistedException(movedTo);
+        }
+        return movedTo;
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keys partitioned by the shard they route to. Keys are held in a single array ordered by shard, with the shard ids
+ * and the offsets of their runs kept in primitive arrays. Shards are in ascending order and keys retain their input
+ * order within a shard.
+ */
+public final class ShardPartition<T> {
+    private final int[] shardIds;
+    private final int[] offsets;
+    private final Object[] keys;
+
+    ShardPartition(int[] shardIds, int[] offsets, Object[] keys) {
+        this.shardIds = shardIds;
+        this.offsets = offsets;
+        this.keys = keys;
+    }
+
+    /**
+     * Builds a partition from keys and the shard each of them routes to.
+     */
+    static <T> ShardPartition<T> of(Object[] keys, int[] shards) {
+        int maxShard = -1;
+        for (int shard : shards) {
+            maxShard = Math.max(maxShard, shard);
+        }
+        final int[] counts = new int[maxShard + 1];
+        for (int shard : shards) {
+            counts[shard]++;
+        }
+        int numShards = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                numShards++;
+            }
+        }
+        final int[] shardIds = new int[numShards];
+        final int[] offsets = new int[numShards + 1];
+        final int[] cursors = new int[maxShard + 1];
+        int index = 0;
+        int offset = 0;
+        for (int shard = 0; shard <= maxShard; shard++) {
+            if (counts[shard] > 0) {
+                shardIds[index] = shard;
+                offsets[index++] = offset;
+                cursors[shard] = offset;
+                offset += counts[shard];
+            }
+        }
+        offsets[numShards] = offset;
+        final Object[] ordered = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ordered[cursors[shards[i]]++] = keys[i];
+        }
+        return new ShardPartition<>(shardIds, offsets, ordered);
+    }
+
+    /**
+     * @return Number of shards that have at least one key
+     */
+    public int size() {
+        return shardIds.length;
+    }
+
+    public boolean isEmpty() {
+        return shardIds.length == 0;
+    }
+
+    /**
+     * @return Shard ids that have at least one key, in ascending order
+     */
+    public int[] shardIds() {
+        return shardIds.clone();
+    }
+
+    /**
+     * @param index Position of the shard in {@link #shardIds()}
+     * @return Shard id at the given position
+     */
+    public int shardIdAt(int index) {
+        return shardIds[index];
+    }
+
+    /**
+     * @param index Position of the shard in {@link #shardIds()}
+     * @return Read-only view of the keys routed to the shard at the given position
+     */
+    public List<T> keysAt(int index) {
+        return new Slice(offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * @param shardId Shard id
+     * @return Read-only view of the keys routed to the shard. Empty if no key routes to it.
+     */
+    public List<T> keys(int shardId) {
+        final int index = Arrays.binarySearch(shardIds, shardId);
+        return index < 0 ? new Slice(0, 0) : keysAt(index);
+    }
+
+    private final class Slice extends AbstractList<T> {
+        private final int from;
+        private final int to;
+
+        private Slice(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            }
+            return (T) keys[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.appform.dropwizard.sharding.utils;
+
+import lombok.AllArgsConstructor;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Lazily merges a set of individually sorted sources into one sorted sequence using a heap of the current head of
+ * every source. Only one element per source is held at a time. Ties are broken by the position of the source in the
+ * provided list, so the merge is deterministic.
+ */
+public class SortedMergeIterator<T> implements Iterator<T> {
+
+    @AllArgsConstructor
+    private static final class Head<T> {
+        private T value;
+        private final Iterator<? extends T> source;
+        private final int sourceIndex;
+    }
+
+    private final PriorityQueue<Head<T>> heads;
+    private int lastSourceIndex = -1;
+
+    public SortedMergeIterator(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                                         Comparator.<Head<T>, T>comparing(head -> head.value, comparator)
+                                                 .thenComparingInt(head -> head.sourceIndex));
+        for (int i = 0; i < sources.size(); i++) {
+            final Iterator<? extends T> source = sources.get(i);
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source, i));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        final Head<T> head = heads.poll();
+        if (null == head) {
+            throw new NoSuchElementException();
+        }
+        final T value = head.value;
+        lastSourceIndex = head.sourceIndex;
+        if (head.source.hasNext()) {
+            head.value = head.source.next();
+            heads.add(head);
+        }
+        return value;
+    }
+
+    /**
+     * @return Index of the source that produced the element last returned by {@link #next()}, -1 if none
+     */
+    public int lastSourceIndex() {
+        return lastSourceIndex;
+    }
+}
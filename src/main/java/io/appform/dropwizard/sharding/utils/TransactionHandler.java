@@ -114,7 +114,7 @@ public class TransactionHandler {
 
     private void rollbackTransaction() {
         final Transaction txn = session.getTransaction();
-        if (txn != null && txn.getStatus() == TransactionStatus.ACTIVE) {
+        if (txn != null && txn.getStatus().canRollback()) {
             txn.rollback();
         }
     }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding;
+
+import io.appform.dropwizard.sharding.config.ShardedHibernateFactory;
+import io.appform.dropwizard.sharding.dao.testdata.entities.Order;
+import io.appform.dropwizard.sharding.dao.testdata.entities.OrderItem;
+import io.appform.dropwizard.sharding.sharding.WeightedShardManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WeightedDBShardingBundleWithEntityTest extends DBShardingBundleTestBase {
+
+    @Override
+    protected DBShardingBundleBase<TestConfig> getBundle() {
+        return new WeightedDBShardingBundle<TestConfig>(Order.class, OrderItem.class) {
+            @Override
+            protected ShardedHibernateFactory getConfig(TestConfig config) {
+                return testConfig.getShards();
+            }
+        };
+    }
+
+    @Test
+    public void testWeightsFromConfig() {
+        testConfig.getShards().setShardWeights(Arrays.asList(3, 1));
+        DBShardingBundleBase<TestConfig> bundle = getBundle();
+        bundle.initialize(bootstrap);
+        bundle.initBundles(bootstrap);
+        bundle.runBundles(testConfig, environment);
+        bundle.run(testConfig, environment);
+
+        WeightedShardManager shardManager = (WeightedShardManager) bundle.getShardManager();
+        assertEquals(Arrays.asList(3, 1), shardManager.weights());
+        assertEquals(0, shardManager.shardForBucket(767));
+        assertEquals(1, shardManager.shardForBucket(768));
+    }
+}
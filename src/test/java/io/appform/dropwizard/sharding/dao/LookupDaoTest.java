@@ -16,11 +16,11 @@
  */
 
 package io.appform.dropwizard.sharding.dao;
-
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import io.appform.dropwizard.sharding.ShardInfoProvider;
+import io.appform.dropwizard.sharding.aggregation.Aggregation;
 import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
 import io.appform.dropwizard.sharding.dao.interceptors.TimerObserver;
 import io.appform.dropwizard.sharding.dao.listeners.LoggingListener;
@@ -28,9 +28,14 @@ import io.appform.dropwizard.sharding.dao.testdata.entities.Audit;
 import io.appform.dropwizard.sharding.dao.testdata.entities.Phone;
 import io.appform.dropwizard.sharding.dao.testdata.entities.TestEntity;
 import io.appform.dropwizard.sharding.dao.testdata.entities.Transaction;
+import io.appform.dropwizard.sharding.metrics.BucketTrafficTracker;
+import io.appform.dropwizard.sharding.migration.BucketMigrationOptions;
+import io.appform.dropwizard.sharding.migration.RelatedRows;
 import io.appform.dropwizard.sharding.observers.internal.ListenerTriggeringObserver;
+import io.appform.dropwizard.sharding.observers.internal.TerminalTransactionObserver;
 import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
+import io.appform.dropwizard.sharding.sharding.ShardingKeyType;
 import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import lombok.val;
@@ -39,19 +44,34 @@ import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.persister.entity.EntityPersister;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class LookupDaoTest {
@@ -61,6 +81,7 @@ public class LookupDaoTest {
     private LookupDao<Phone> phoneDao;
     private RelationalDao<Transaction> transactionDao;
     private RelationalDao<Audit> auditDao;
+    private ShardManager shardManager;
 
     private SessionFactory buildSessionFactory(String dbName) {
         Configuration configuration = new Configuration();
@@ -90,7 +111,7 @@ public class LookupDaoTest {
         for (int i = 0; i < 2; i++) {
             sessionFactories.add(buildSessionFactory(String.format("db_%d", i)));
         }
-        final ShardManager shardManager = new BalancedShardManager(sessionFactories.size());
+        shardManager = new BalancedShardManager(sessionFactories.size());
         final ShardCalculator<String> shardCalculator = new ShardCalculator<>(shardManager,
                 new ConsistentHashBucketIdExtractor<>(
                         shardManager));
@@ -112,6 +133,27 @@ public class LookupDaoTest {
         sessionFactories.forEach(SessionFactory::close);
     }
 
+    @Test
+    public void testTypedKeys() throws Exception {
+        val uuidDao = new LookupDao<>(sessionFactories, TestEntity.class,
+                                      new ShardCalculator<>(shardManager, ShardingKeyType.UUID.extractor(shardManager)),
+                                      new ShardingBundleOptions(), new ShardInfoProvider("default"),
+                                      new TerminalTransactionObserver());
+        val uuid = UUID.randomUUID().toString();
+        uuidDao.save(TestEntity.builder().externalId(uuid).text("uuid").build());
+        assertEquals("uuid", uuidDao.get(uuid).map(TestEntity::getText).orElse(null));
+        assertTrue(uuidDao.exists(uuid));
+        assertFalse(uuidDao.exists(UUID.randomUUID().toString()));
+
+        val bytesDao = new LookupDao<>(sessionFactories, TestEntity.class,
+                                       new ShardCalculator<>(shardManager, ShardingKeyType.BYTES.extractor(shardManager)),
+                                       new ShardingBundleOptions(), new ShardInfoProvider("default"),
+                                       new TerminalTransactionObserver());
+        val binary = ShardingKeyType.toKey(new byte[]{1, 2, 3, -4});
+        bytesDao.save(TestEntity.builder().externalId(binary).text("bytes").build());
+        assertEquals("bytes", bytesDao.get(binary).map(TestEntity::getText).orElse(null));
+    }
+
     @Test
     public void testSave() throws Exception {
         TestEntity testEntity = TestEntity.builder()
@@ -396,4 +438,310 @@ public class LookupDaoTest {
         );
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testScatterGatherStream() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            lookupDao.save(TestEntity.builder()
+                                   .externalId("streamId" + i)
+                                   .text("STREAM")
+                                   .build());
+        }
+        val criteria = DetachedCriteria.forClass(TestEntity.class)
+                .add(Restrictions.eq("text", "STREAM"));
+        try (val stream = lookupDao.scatterGatherStream(criteria, 5)) {
+            assertEquals(20, stream.map(TestEntity::getExternalId).distinct().count());
+        }
+        try (val stream = lookupDao.scatterGatherStream(criteria)) {
+            assertEquals(3, stream.limit(3).count());
+        }
+        try (val stream = lookupDao.scatterGatherStream(DetachedCriteria.forClass(TestEntity.class)
+                                                                .add(Restrictions.eq("text", "NONE")))) {
+            assertEquals(0, stream.count());
+        }
+        assertEquals(20, lookupDao.scatterGather(criteria).size());
+    }
+
+    @Test
+    public void testAggregate() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            lookupDao.save(TestEntity.builder()
+                                   .externalId(String.format("aggId%02d", i))
+                                   .text("AGG" + (i % 4))
+                                   .build());
+        }
+        val criteria = DetachedCriteria.forClass(TestEntity.class)
+                .add(Restrictions.like("text", "AGG%"));
+        val result = lookupDao.aggregate(criteria, ImmutableList.of(Aggregation.count(),
+                                                                    Aggregation.countDistinct("text"),
+                                                                    Aggregation.min("externalId"),
+                                                                    Aggregation.max("externalId")));
+        assertEquals(1, result.size());
+        assertArrayEquals(new Object[]{20L, 4L, "aggId00", "aggId19"}, result.get(0));
+    }
+
+    @Test
+    public void testScatterGatherPartial() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            lookupDao.save(TestEntity.builder()
+                                   .externalId("partialId" + i)
+                                   .text("PARTIAL")
+                                   .build());
+        }
+        val criteria = DetachedCriteria.forClass(TestEntity.class)
+                .add(Restrictions.eq("text", "PARTIAL"));
+        val complete = lookupDao.scatterGatherPartial(criteria, 0);
+        assertTrue(complete.isComplete());
+        assertEquals(20, complete.getResult().size());
+
+        val counts = lookupDao.countPartial(criteria, 0);
+        assertEquals(20, counts.getResult().values().stream().mapToLong(Long::longValue).sum());
+
+        shardManager.blacklistShard(1);
+        val partial = lookupDao.scatterGatherPartial(criteria, 0);
+        assertFalse(partial.isComplete());
+        assertEquals(Collections.singleton(1), partial.getSkippedShards());
+        assertEquals(counts.getResult().get(0).intValue(), partial.getResult().size());
+        assertEquals(Collections.singleton(0), lookupDao.countPartial(criteria, 0).getResult().keySet());
+        shardManager.unblacklistShard(1);
+    }
+
+    @Test
+    public void testMultiGet() throws Exception {
+        val keys = Lists.<String>newArrayList();
+        for (int i = 0; i < 20; i++) {
+            val key = "multiGetId" + i;
+            keys.add(key);
+            lookupDao.save(TestEntity.builder()
+                                   .externalId(key)
+                                   .text("MULTI_GET")
+                                   .build());
+        }
+        val chunkedDao = new LookupDao<>(sessionFactories, TestEntity.class, lookupDao.getShardCalculator(),
+                                         ShardingBundleOptions.builder().multiGetChunkSize(3).build(),
+                                         new ShardInfoProvider("default"), new TimerObserver());
+        Collections.reverse(keys);
+        keys.add("missingId");
+        assertEquals(20, chunkedDao.get(keys).size());
+        assertEquals(keys.subList(0, 20), chunkedDao.get(keys, true)
+                .stream()
+                .map(TestEntity::getExternalId)
+                .collect(Collectors.toList()));
+        val entities = chunkedDao.getAsMap(keys);
+        assertEquals(20, entities.size());
+        assertEquals("MULTI_GET", entities.get("multiGetId7").getText());
+        assertFalse(entities.containsKey("missingId"));
+        assertTrue(chunkedDao.get(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testSaveAll() throws Exception {
+        lookupDao.save(TestEntity.builder()
+                               .externalId("bulkId5")
+                               .text("EXISTING")
+                               .build());
+        val batchingDao = new LookupDao<>(sessionFactories, TestEntity.class, lookupDao.getShardCalculator(),
+                                          ShardingBundleOptions.builder().saveAllBatchSize(10).build(),
+                                          new ShardInfoProvider("default"), new TimerObserver());
+        val keys = IntStream.range(0, 100)
+                .mapToObj(i -> "bulkId" + i)
+                .collect(Collectors.toList());
+        val result = batchingDao.saveAll(keys.stream()
+                                                 .map(key -> TestEntity.builder()
+                                                         .externalId(key)
+                                                         .text("BULK")
+                                                         .build())
+                                                 .collect(Collectors.toList()));
+        //The batch holding the existing key is rolled back, everything else goes through
+        assertFalse(result.isComplete());
+        assertTrue(result.getFailedKeys().contains("bulkId5"));
+        assertEquals(Collections.singleton(lookupDao.getShardCalculator().shardId("bulkId5")),
+                     result.getFailedShards().keySet());
+        assertEquals(2, result.getSavedByShard().size());
+        assertEquals(100, result.getSavedCount() + result.getFailedKeys().size());
+        assertEquals(result.getSavedCount() + 1, lookupDao.get(keys).size());
+        assertEquals("EXISTING", lookupDao.get("bulkId5").get().getText());
+        assertTrue(lookupDao.get(result.getFailedKeys()
+                                         .stream()
+                                         .filter(key -> !key.equals("bulkId5"))
+                                         .collect(Collectors.toList()))
+                           .isEmpty());
+
+        assertTrue(batchingDao.saveAll(Collections.emptyList()).isComplete());
+    }
+
+    @Test
+    public void testDeleteMultipleKeys() throws Exception {
+        val keys = IntStream.range(0, 20)
+                .mapToObj(i -> "deleteId" + i)
+                .collect(Collectors.toList());
+        for (String key : keys) {
+            lookupDao.save(TestEntity.builder()
+                                   .externalId(key)
+                                   .text("DELETE")
+                                   .build());
+        }
+        val toDelete = Lists.newArrayList(keys.subList(0, 10));
+        toDelete.add("missingId");
+        assertEquals(10, lookupDao.delete(toDelete));
+        assertEquals(keys.subList(10, 20), lookupDao.get(keys, true)
+                .stream()
+                .map(TestEntity::getExternalId)
+                .collect(Collectors.toList()));
+        assertEquals(0, lookupDao.delete(Collections.emptyList()));
+
+        assertTrue(lookupDao.delete("deleteId15"));
+        assertFalse(lookupDao.delete("deleteId15"));
+        assertFalse(lookupDao.get("deleteId15").isPresent());
+    }
+
+    @Test
+    public void testDeleteRunsDeleteListeners() throws Exception {
+        val deleted = new ArrayList<Object>();
+        sessionFactories.forEach(sessionFactory -> sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_DELETE, new PostDeleteEventListener() {
+                    @Override
+                    public void onPostDelete(PostDeleteEvent event) {
+                        deleted.add(event.getId());
+                    }
+
+                    @Override
+                    public boolean requiresPostCommitHanding(EntityPersister persister) {
+                        return false;
+                    }
+                }));
+        for (int i = 0; i < 3; i++) {
+            lookupDao.save(TestEntity.builder()
+                                   .externalId("listenedId" + i)
+                                   .text("DELETE")
+                                   .build());
+        }
+        assertTrue(lookupDao.delete("listenedId0"));
+        assertEquals(2, lookupDao.delete(Arrays.asList("listenedId1", "listenedId2")));
+        assertEquals(3, deleted.size());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        val futures = Lists.<CompletableFuture<Optional<TestEntity>>>newArrayList();
+        for (int i = 0; i < 10; i++) {
+            futures.add(lookupDao.saveAsync(TestEntity.builder()
+                                                    .externalId("asyncId" + i)
+                                                    .text("ASYNC")
+                                                    .build()));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        assertEquals("ASYNC", lookupDao.getAsync("asyncId3").get().get().getText());
+        assertFalse(lookupDao.getAsync("missingId").get().isPresent());
+        assertTrue(lookupDao.updateAsync("asyncId3", entity -> {
+            entity.get().setText("UPDATED");
+            return entity.get();
+        }).get());
+        assertEquals("UPDATED", lookupDao.get("asyncId3").get().getText());
+        assertTrue(lookupDao.deleteAsync("asyncId3").get());
+        assertFalse(lookupDao.get("asyncId3").isPresent());
+
+        //Every async call routes and counts it's key once
+        val tracker = new BucketTrafficTracker(shardManager.numBuckets(), 1);
+        val calculator = new ShardCalculator<String>(shardManager,
+                                                     new ConsistentHashBucketIdExtractor<>(shardManager),
+                                                     tracker);
+        val trackedDao = new LookupDao<>(sessionFactories, TestEntity.class, calculator, new ShardingBundleOptions(),
+                                         new ShardInfoProvider("default"), new TerminalTransactionObserver());
+        trackedDao.saveAsync(TestEntity.builder().externalId("tracked").text("ASYNC").build()).get();
+        assertTrue(trackedDao.getAsync("tracked").get().isPresent());
+        assertTrue(trackedDao.deleteAsync("tracked").get());
+        assertEquals(3, tracker.count(calculator.bucketId("tracked")));
+    }
+
+    @Test
+    public void testMigrateBucket() throws Exception {
+        val calculator = new ShardCalculator<String>(shardManager, new ConsistentHashBucketIdExtractor<>(shardManager));
+        for (int i = 0; i < 1000; i++) {
+            lookupDao.save(TestEntity.builder()
+                                   .externalId("id-" + i)
+                                   .text("Text " + i)
+                                   .build());
+        }
+        val bucketId = calculator.bucketId("id-0");
+        val sourceShard = calculator.shardId("id-0");
+        val targetShard = 1 - sourceShard;
+        val bucketKeys = IntStream.range(0, 1000)
+                .mapToObj(i -> "id-" + i)
+                .filter(key -> calculator.bucketId(key) == bucketId)
+                .collect(Collectors.toList());
+
+        for (val key : bucketKeys.subList(0, 2)) {
+            transactionDao.save(key, Transaction.builder()
+                    .transactionId("txn-" + key)
+                    .to(key)
+                    .amount(10)
+                    .build());
+        }
+        val staleContext = lookupDao.lockAndGetExecutor(bucketKeys.get(1));
+
+        val result = lookupDao.migrateBucket(bucketId, targetShard,
+                                             BucketMigrationOptions.builder()
+                                                     .batchSize(2)
+                                                     .deleteFromSource(true)
+                                                     .relatedRows(Collections.singletonList(RelatedRows.of(
+                                                             transactionDao,
+                                                             key -> DetachedCriteria.forClass(Transaction.class)
+                                                                     .add(Restrictions.eq("to", key)))))
+                                                     .build());
+        assertTrue(result.isVerified());
+        assertEquals(sourceShard, result.getSourceShard());
+        assertEquals(bucketKeys.size(), result.getCopiedRows());
+        assertEquals(0, result.getMismatchedRows());
+        assertEquals(bucketKeys.size(), result.getDeletedRows());
+        assertEquals(1, result.getBucketMapVersion());
+        assertEquals(Collections.singletonMap(bucketId, targetShard), lookupDao.bucketMap().moves());
+
+        for (val key : bucketKeys) {
+            assertEquals(0, countOnShard(sourceShard, key));
+            assertEquals(1, countOnShard(targetShard, key));
+            assertEquals("Text " + key.substring(3), lookupDao.get(key).map(TestEntity::getText).orElse(null));
+        }
+        assertEquals(1000, lookupDao.get(IntStream.range(0, 1000)
+                                                 .mapToObj(i -> "id-" + i)
+                                                 .collect(Collectors.toList())).size());
+
+        //Writes go to the new shard
+        assertTrue(lookupDao.update(bucketKeys.get(0), entity -> {
+            entity.get().setText("Updated");
+            return entity.get();
+        }));
+        assertEquals("Updated", lookupDao.get(bucketKeys.get(0)).map(TestEntity::getText).orElse(null));
+        assertEquals(1, countOnShard(targetShard, bucketKeys.get(0)));
+
+        //Related rows moved with their parents
+        for (val key : bucketKeys.subList(0, 2)) {
+            assertTrue(transactionDao.get(key, "txn-" + key).isPresent());
+            try (val session = sessionFactories.get(sourceShard).openSession()) {
+                assertNull(session.get(Transaction.class, "txn-" + key));
+            }
+        }
+
+        //Contexts routed before the move fail instead of writing to the old shard
+        assertThrows(IllegalStateException.class, () -> staleContext
+                .mutate(entity -> entity.setText("Stale"))
+                .execute());
+        assertEquals("Text " + bucketKeys.get(1).substring(3),
+                     lookupDao.get(bucketKeys.get(1)).map(TestEntity::getText).orElse(null));
+
+        assertThrows(IllegalArgumentException.class, () -> lookupDao.migrateBucket(bucketId, targetShard));
+        //Other instances still route the bucket to the source shard, so it is kept there unless asked for
+        assertFalse(new BucketMigrationOptions().isDeleteFromSource());
+    }
+
+    private long countOnShard(int shardId, String key) {
+        try (val session = sessionFactories.get(shardId).openSession()) {
+            return (long) session.createCriteria(TestEntity.class)
+                    .add(Restrictions.eq("externalId", key))
+                    .setProjection(Projections.rowCount())
+                    .uniqueResult();
+        }
+    }
+}
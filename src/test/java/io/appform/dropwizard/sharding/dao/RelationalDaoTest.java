@@ -20,31 +20,59 @@ package io.appform.dropwizard.sharding.dao;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import io.appform.dropwizard.sharding.ShardInfoProvider;
+import io.appform.dropwizard.sharding.aggregation.Aggregation;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
 import io.appform.dropwizard.sharding.dao.interceptors.DaoClassLocalObserver;
 import io.appform.dropwizard.sharding.dao.interceptors.EntityClassThreadLocalObserver;
 import io.appform.dropwizard.sharding.dao.interceptors.InterceptorTestUtil;
+import io.appform.dropwizard.sharding.dao.testdata.entities.OrderItem;
 import io.appform.dropwizard.sharding.dao.testdata.entities.RelationalEntity;
+import io.appform.dropwizard.sharding.execution.ScatterGatherExecutor;
+import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
+import io.appform.dropwizard.sharding.observers.TransactionObserver;
 import io.appform.dropwizard.sharding.observers.internal.TerminalTransactionObserver;
 import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.BucketMove;
 import io.appform.dropwizard.sharding.sharding.ShardManager;
 import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.RandomBucketIdExtractor;
+import io.appform.dropwizard.sharding.utils.CriteriaUtils;
 import io.appform.dropwizard.sharding.utils.ShardCalculator;
 import lombok.val;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.context.internal.ManagedSessionContext;
 import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.MDC;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RelationalDaoTest {
 
@@ -111,6 +139,215 @@ public class RelationalDaoTest {
 
     }
 
+    @Test
+    public void testBatchedBulkSave() {
+        val shardManager = new BalancedShardManager(sessionFactories.size());
+        val batchSizes = new ArrayList<Integer>();
+        val batchingDao = new RelationalDao<>(sessionFactories,
+                RelationalEntity.class,
+                new ShardCalculator<>(shardManager, new ConsistentHashBucketIdExtractor<>(shardManager)),
+                ShardingBundleOptions.builder().saveAllBatchSize(10).build(),
+                new ShardInfoProvider("default"),
+                new TransactionObserver(new TerminalTransactionObserver()) {
+                    @Override
+                    public <T> T execute(TransactionExecutionContext context, Supplier<T> supplier) {
+                        T result = proceed(context, supplier);
+                        if ("saveAllBatch".equals(context.getOpType())) {
+                            batchSizes.add((Integer) result);
+                        }
+                        return result;
+                    }
+                },
+                ScatterGatherExecutor.create(null, sessionFactories.size()));
+        val key = "batchedParent";
+        val entities = IntStream.range(0, 35)
+                .mapToObj(i -> RelationalEntity.builder()
+                        .key(Integer.toString(i))
+                        .value("value_" + i)
+                        .build())
+                .collect(Collectors.toList());
+        assertTrue(batchingDao.saveAll(key, entities));
+        assertEquals(Arrays.asList(10, 10, 10, 5), batchSizes);
+        assertEquals(35, batchingDao.count(key, DetachedCriteria.forClass(RelationalEntity.class)));
+    }
+
+    @Test
+    public void testUpsertAll() throws Exception {
+        val key = "upsertParent";
+        assertEquals(2, relationalDao.upsertAll(key, Arrays.asList(
+                RelationalEntity.builder().key("u1").value("one").amount(1).build(),
+                RelationalEntity.builder().key("u2").value("two").amount(2).build())));
+        assertEquals(2, relationalDao.upsertAll(key, Arrays.asList(
+                RelationalEntity.builder().key("u2").value("TWO").amount(20).build(),
+                RelationalEntity.builder().key("u3").value("three").amount(3).build())));
+        assertEquals(3, relationalDao.count(key, DetachedCriteria.forClass(RelationalEntity.class)));
+        val updated = relationalDao.get(key, "u2").get();
+        assertEquals("TWO", updated.getValue());
+        assertEquals(20, updated.getAmount());
+        assertEquals("one", relationalDao.get(key, "u1").get().getValue());
+
+        val otherKey = "otherUpsertParent";
+        assertEquals(3, relationalDao.upsertAll(ImmutableMap.of(
+                key, Collections.singletonList(RelationalEntity.builder().key("u1").value("ONE").build()),
+                otherKey, Arrays.asList(RelationalEntity.builder().key("o1").value("other").build(),
+                                        RelationalEntity.builder().key("o2").value("other").build()))));
+        assertEquals("ONE", relationalDao.get(key, "u1").get().getValue());
+        assertEquals(2, relationalDao.count(otherKey, DetachedCriteria.forClass(RelationalEntity.class)));
+        assertEquals(0, relationalDao.upsertAll(Collections.emptyMap()));
+    }
+
+    @Test
+    public void testLockedContextsWithRandomBuckets() {
+        val shardManager = new BalancedShardManager(sessionFactories.size());
+        val randomDao = new RelationalDao<>(sessionFactories,
+                RelationalEntity.class,
+                new ShardCalculator<>(shardManager, new RandomBucketIdExtractor<>(shardManager)),
+                new ShardInfoProvider("default"),
+                new TerminalTransactionObserver());
+        for (int i = 0; i < 50; i++) {
+            val entity = RelationalEntity.builder().key("random_" + i).value("value").build();
+            assertEquals("value", randomDao.saveAndGetExecutor("randomParent", entity).execute().getValue());
+        }
+    }
+
+    @Test
+    public void testNativeUpsertRefreshesLoadedEntities() {
+        val sessionFactory = sessionFactories.get(0);
+        val upsert = NativeUpsert.create(sessionFactory, RelationalEntity.class);
+        try (val session = sessionFactory.openSession()) {
+            val transaction = session.beginTransaction();
+            session.save(RelationalEntity.builder().key("loaded").value("old").build());
+            session.flush();
+            assertEquals("old", session.get(RelationalEntity.class, "loaded").getValue());
+            assertEquals(1, upsert.execute(session, Collections.singletonList(
+                    RelationalEntity.builder().key("loaded").value("new").build())));
+            assertEquals("new", session.get(RelationalEntity.class, "loaded").getValue());
+            transaction.commit();
+        }
+    }
+
+    @Test
+    public void testNativeUpsertRejectsExtraUniqueKeysOnMySql() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect",
+                "org.hibernate.dialect.MySQL57Dialect");
+        configuration.setProperty("hibernate.connection.driver_class",
+                "org.h2.Driver");
+        configuration.setProperty("hibernate.connection.url", "jdbc:h2:mem:mysql_upsert");
+        configuration.setProperty("hibernate.current_session_context_class", "managed");
+        configuration.addAnnotatedClass(RelationalEntity.class);
+        configuration.addAnnotatedClass(io.appform.dropwizard.sharding.dao.testdata.entities.Order.class);
+        configuration.addAnnotatedClass(OrderItem.class);
+        try (val sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build())) {
+            assertNotNull(NativeUpsert.create(sessionFactory, RelationalEntity.class));
+            assertThrows(IllegalArgumentException.class,
+                         () -> NativeUpsert.create(sessionFactory,
+                                                   io.appform.dropwizard.sharding.dao.testdata.entities.Order.class));
+        }
+    }
+
+    @Test
+    public void testUpdateInChunks() throws Exception {
+        val key = "chunkedParent";
+        relationalDao.saveAll(key, IntStream.range(0, 25)
+                .mapToObj(i -> RelationalEntity.builder()
+                        .key(String.format("c%02d", i))
+                        .value("v0")
+                        .build())
+                .collect(Collectors.toList()));
+        val all = DetachedCriteria.forClass(RelationalEntity.class);
+
+        val scrolled = relationalDao.updateInChunks(key, all, entity -> {
+            entity.setValue("v1");
+            return entity;
+        }, ChunkedUpdateOptions.builder().chunkSize(10).fetchSize(5).build());
+        assertEquals(25, scrolled.getUpdatedRows());
+        assertEquals(3, scrolled.getChunks());
+        assertTrue(scrolled.isCompleted());
+        assertEquals(25, relationalDao.count(key, DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("value", "v1"))));
+
+        //Fail half way through the second chunk, then resume from the last committed chunk
+        val checkpoints = new ArrayList<String>();
+        val options = ChunkedUpdateOptions.builder()
+                .chunkSize(10)
+                .commitPerChunk(true)
+                .checkpointListener(checkpoints::add)
+                .build();
+        assertThrows(RuntimeException.class, () -> relationalDao.updateInChunks(key, all, entity -> {
+            if (entity.getKey().equals("c15")) {
+                throw new IllegalStateException("Failing on purpose");
+            }
+            entity.setValue("v2");
+            return entity;
+        }, options));
+        assertEquals(1, checkpoints.size());
+        assertEquals(10, relationalDao.count(key, DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("value", "v2"))));
+
+        options.setCheckpoint(checkpoints.get(0));
+        val resumed = relationalDao.updateInChunks(key, all, entity -> {
+            entity.setValue("v2");
+            return entity;
+        }, options);
+        assertEquals(15, resumed.getUpdatedRows());
+        assertEquals(2, resumed.getChunks());
+        assertEquals(resumed.getCheckpoint(), checkpoints.get(2));
+        assertEquals(25, relationalDao.count(key, DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("value", "v2"))));
+
+        val stopped = relationalDao.updateInChunks(key, all, entity -> null, options);
+        assertFalse(stopped.isCompleted());
+        assertEquals(0, stopped.getUpdatedRows());
+        assertEquals(options.getCheckpoint(), stopped.getCheckpoint());
+    }
+
+    @Test
+    public void testUpdateInChunksLetsBucketsMoveBetweenChunks() throws Exception {
+        val shardManager = new BalancedShardManager(sessionFactories.size());
+        val calculator = new ShardCalculator<String>(shardManager, new ConsistentHashBucketIdExtractor<>(shardManager));
+        val dao = new RelationalDao<>(sessionFactories, RelationalEntity.class, calculator,
+                                      new ShardInfoProvider("default"), new TerminalTransactionObserver());
+        val key = "movingParent";
+        dao.saveAll(key, IntStream.range(0, 25)
+                .mapToObj(i -> RelationalEntity.builder()
+                        .key(String.format("m%02d", i))
+                        .value("v0")
+                        .build())
+                .collect(Collectors.toList()));
+        val bucketId = calculator.bucketId(key);
+        val targetShard = (calculator.shardId(key) + 1) % sessionFactories.size();
+        val moves = new ArrayList<BucketMove>();
+        val checkpoints = new ArrayList<String>();
+        val options = ChunkedUpdateOptions.builder()
+                .chunkSize(10)
+                .commitPerChunk(true)
+                .checkpointListener(checkpoint -> {
+                    //Would wait forever if the bucket was held for the whole update
+                    if (checkpoints.isEmpty()) {
+                        moves.add(calculator.startMove(bucketId, targetShard));
+                    }
+                    checkpoints.add(checkpoint);
+                })
+                .build();
+        val result = dao.updateInChunks(key, DetachedCriteria.forClass(RelationalEntity.class), entity -> {
+            entity.setValue("v1");
+            return entity;
+        }, options);
+        assertEquals(25, result.getUpdatedRows());
+        assertEquals(1, moves.size());
+
+        //Chunks written during the move are recorded, resuming after the switch over runs on the new shard
+        val written = new ArrayList<Object>();
+        calculator.routing().switchOver(moves.get(0), written::add);
+        calculator.routing().endMove(moves.get(0));
+        assertEquals(Collections.singletonList(key), written);
+        options.setCheckpoint(checkpoints.get(0));
+        assertEquals(0, dao.updateInChunks(key, DetachedCriteria.forClass(RelationalEntity.class), entity -> entity,
+                                           options).getUpdatedRows());
+    }
+
     @Test
     public void testUpdateUsingQuery() throws Exception {
         val relationalKey = UUID.randomUUID().toString();
@@ -223,4 +460,321 @@ public class RelationalDaoTest {
         relationalDao.save(relationalKey, entityOne);
         InterceptorTestUtil.validateThreadLocal(RelationalDao.class, RelationalEntity.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testScatterGather() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            relationalDao.save("parent" + i, RelationalEntity.builder()
+                    .key(String.valueOf(i))
+                    .keyTwo("sg")
+                    .value(UUID.randomUUID().toString())
+                    .build());
+        }
+        val criteria = DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("keyTwo", "sg"));
+        assertEquals(20, relationalDao.countScatterGather(criteria)
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum());
+        assertEquals(20, relationalDao.scatterGather(criteria, 0, 100).size());
+    }
+
+    @Test
+    public void testMultiGet() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            relationalDao.save("parent1", RelationalEntity.builder()
+                    .key("p1_" + i)
+                    .value("one")
+                    .build());
+            relationalDao.save("parent2", RelationalEntity.builder()
+                    .key("p2_" + i)
+                    .value("two")
+                    .build());
+        }
+        val entities = relationalDao.get("parent1", Arrays.asList("p1_1", "p1_3", "p1_5", "p1_5", "missing"));
+        assertEquals(Arrays.asList("p1_1", "p1_3", "p1_5"), entities.stream()
+                .map(RelationalEntity::getKey)
+                .sorted()
+                .collect(Collectors.toList()));
+        assertTrue(relationalDao.get("parent1", Collections.emptyList()).isEmpty());
+
+        val acrossParents = relationalDao.get(ImmutableMap.of("parent1", Arrays.asList("p1_0", "p1_9"),
+                                                              "parent2", Arrays.asList("p2_2", "p2_4", "p2_6")));
+        assertEquals(Arrays.asList("p1_0", "p1_9", "p2_2", "p2_4", "p2_6"), acrossParents.stream()
+                .map(RelationalEntity::getKey)
+                .sorted()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        val saved = relationalDao.saveAsync("parent1", RelationalEntity.builder()
+                .key("async1")
+                .keyTwo("async")
+                .value("one")
+                .build());
+        assertEquals("async1", saved.get().get().getKey());
+        assertEquals("one", relationalDao.getAsync("parent1", "async1").get().get().getValue());
+        assertEquals(1, relationalDao.getAsync("parent1", Arrays.asList("async1", "missing")).get().size());
+        assertEquals(1, relationalDao.selectAsync("parent1", DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("keyTwo", "async")), 0, 10).get().size());
+    }
+
+    @Test
+    public void testAggregateScatterGather() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            relationalDao.save("parent" + i, RelationalEntity.builder()
+                    .key(String.format("%03d", i))
+                    .keyTwo(i % 2 == 0 ? "even" : "odd")
+                    .value("v" + (i % 5))
+                    .amount(i)
+                    .build());
+        }
+        val criteria = DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.in("keyTwo", "even", "odd"));
+        val totals = relationalDao.aggregateScatterGather(criteria, Arrays.asList(
+                Aggregation.count(),
+                Aggregation.sum("amount"),
+                Aggregation.avg("amount"),
+                Aggregation.min("key"),
+                Aggregation.max("amount"),
+                Aggregation.countDistinct("value")));
+        assertEquals(1, totals.size());
+        assertArrayEquals(new Object[]{20L, 190L, 9.5, "000", 19L, 5L}, totals.get(0));
+
+        val grouped = relationalDao.aggregateScatterGather(criteria, Arrays.asList(
+                Aggregation.groupBy("keyTwo"),
+                Aggregation.count(),
+                Aggregation.sum("amount"),
+                Aggregation.countDistinct("value")))
+                .stream()
+                .collect(Collectors.toMap(row -> (String) row[0], row -> row));
+        assertEquals(2, grouped.size());
+        assertArrayEquals(new Object[]{"even", 10L, 90L, 5L}, grouped.get("even"));
+        assertArrayEquals(new Object[]{"odd", 10L, 100L, 5L}, grouped.get("odd"));
+
+        val none = relationalDao.aggregateScatterGather(
+                DetachedCriteria.forClass(RelationalEntity.class).add(Restrictions.eq("keyTwo", "none")),
+                Arrays.asList(Aggregation.count(), Aggregation.sum("amount"), Aggregation.avg("amount")));
+        assertArrayEquals(new Object[]{0L, null, null}, none.get(0));
+
+        val single = relationalDao.aggregate("parent3", criteria, Arrays.asList(Aggregation.count()));
+        assertTrue((Long) single.get(0)[0] >= 1);
+    }
+
+    @Test
+    public void testCountDistinctLimit() throws Exception {
+        val shardManager = new BalancedShardManager(sessionFactories.size());
+        val limitedDao = new RelationalDao<>(sessionFactories,
+                RelationalEntity.class,
+                new ShardCalculator<>(shardManager, new ConsistentHashBucketIdExtractor<>(shardManager)),
+                ShardingBundleOptions.builder().maxDistinctValues(4).build(),
+                new ShardInfoProvider("default"),
+                new TerminalTransactionObserver(),
+                ScatterGatherExecutor.create(null, sessionFactories.size()));
+        for (int i = 0; i < 20; i++) {
+            limitedDao.save("parent" + i, RelationalEntity.builder()
+                    .key(String.format("%03d", i))
+                    .keyTwo("limit")
+                    .value("v" + (i % 5))
+                    .amount(i)
+                    .build());
+        }
+        val criteria = DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("keyTwo", "limit"));
+        assertArrayEquals(new Object[]{4L},
+                          limitedDao.aggregateScatterGather(CriteriaUtils.copy(criteria).add(Restrictions.ne("value", "v4")),
+                                                            Arrays.asList(Aggregation.countDistinct("value"))).get(0));
+        assertThrows(IllegalStateException.class,
+                     () -> limitedDao.aggregateScatterGather(criteria,
+                                                             Arrays.asList(Aggregation.countDistinct("value"))));
+    }
+
+    @Test
+    public void testOrderedScatterGather() throws Exception {
+        val values = Lists.<String>newArrayList();
+        for (int i = 0; i < 30; i++) {
+            val value = UUID.randomUUID().toString();
+            values.add(value);
+            relationalDao.save("parent" + i, RelationalEntity.builder()
+                    .key(String.format("%03d", i))
+                    .keyTwo("ordered")
+                    .value(value)
+                    .build());
+        }
+        val criteria = DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("keyTwo", "ordered"));
+
+        val page = relationalDao.scatterGather(criteria, Collections.singletonList(Order.desc("value")), 5, 10);
+        values.sort(Comparator.reverseOrder());
+        assertEquals(values.subList(5, 15), page.stream()
+                .map(RelationalEntity::getValue)
+                .collect(Collectors.toList()));
+
+        val byKey = relationalDao.scatterGather(DetachedCriteria.forClass(RelationalEntity.class)
+                                                        .add(Restrictions.eq("keyTwo", "ordered"))
+                                                        .addOrder(Order.asc("key")),
+                                                Comparator.comparing(RelationalEntity::getKey),
+                                                25,
+                                                10);
+        assertEquals(Arrays.asList("025", "026", "027", "028", "029"), byKey.stream()
+                .map(RelationalEntity::getKey)
+                .collect(Collectors.toList()));
+        //Cursors on every shard are closed once the page is read
+        sessionFactories.forEach(sessionFactory -> assertFalse(ManagedSessionContext.hasBind(sessionFactory)));
+    }
+
+    @Test
+    public void testKeysetPagination() throws Exception {
+        val values = Lists.<String>newArrayList();
+        for (int i = 0; i < 30; i++) {
+            val value = "value" + (i % 10);
+            values.add(value);
+            relationalDao.save("parent" + i, RelationalEntity.builder()
+                    .key(String.format("%03d", i))
+                    .keyTwo("keyset")
+                    .value(value)
+                    .build());
+        }
+        val criteria = DetachedCriteria.forClass(RelationalEntity.class)
+                .add(Restrictions.eq("keyTwo", "keyset"));
+
+        val fetched = Lists.<RelationalEntity>newArrayList();
+        String token = null;
+        int pages = 0;
+        do {
+            val page = relationalDao.scatterGather(criteria, KeysetPageRequest.builder()
+                    .sortProperty("value")
+                    .ascending(false)
+                    .pageToken(token)
+                    .pageSize(7)
+                    .build());
+            assertTrue(page.getItems().size() <= 7);
+            fetched.addAll(page.getItems());
+            token = page.getNextPageToken();
+            pages++;
+        } while (null != token);
+        assertEquals(5, pages);
+        values.sort(Comparator.reverseOrder());
+        assertEquals(values, fetched.stream().map(RelationalEntity::getValue).collect(Collectors.toList()));
+        assertEquals(30, fetched.stream().map(RelationalEntity::getKey).distinct().count());
+
+        val parentKey = "keysetParent";
+        for (int i = 0; i < 12; i++) {
+            relationalDao.save(parentKey, RelationalEntity.builder()
+                    .key("p" + String.format("%03d", i))
+                    .keyTwo("keysetParent")
+                    .value("value")
+                    .build());
+        }
+        val firstPage = relationalDao.select(parentKey,
+                                             DetachedCriteria.forClass(RelationalEntity.class)
+                                                     .add(Restrictions.eq("keyTwo", "keysetParent")),
+                                             KeysetPageRequest.builder()
+                                                     .sortProperty("value")
+                                                     .pageSize(10)
+                                                     .build());
+        assertEquals(10, firstPage.getItems().size());
+        assertEquals("p000", firstPage.getItems().get(0).getKey());
+        val secondPage = relationalDao.select(parentKey,
+                                              DetachedCriteria.forClass(RelationalEntity.class)
+                                                      .add(Restrictions.eq("keyTwo", "keysetParent")),
+                                              KeysetPageRequest.builder()
+                                                      .sortProperty("value")
+                                                      .pageToken(firstPage.getNextPageToken())
+                                                      .pageSize(10)
+                                                      .build());
+        assertEquals(Arrays.asList("p010", "p011"), secondPage.getItems()
+                .stream()
+                .map(RelationalEntity::getKey)
+                .collect(Collectors.toList()));
+        assertNull(secondPage.getNextPageToken());
+
+        relationalDao.save(parentKey, RelationalEntity.builder()
+                .key("pnull")
+                .keyTwo("keysetParent")
+                .build());
+        assertThrows(IllegalStateException.class,
+                     () -> relationalDao.select(parentKey,
+                                                DetachedCriteria.forClass(RelationalEntity.class)
+                                                        .add(Restrictions.eq("keyTwo", "keysetParent")),
+                                                KeysetPageRequest.builder()
+                                                        .sortProperty("value")
+                                                        .pageSize(20)
+                                                        .build()));
+    }
+
+    @Test
+    public void testKeysetPagesContinueAcrossEqualSortValues() throws Exception {
+        val parentKey = "keysetTies";
+        val expected = Lists.<String>newArrayList();
+        for (int i = 0; i < 20; i++) {
+            val value = "group" + (i % 4);
+            val key = String.format("t%03d", i);
+            expected.add(value + ":" + key);
+            relationalDao.save(parentKey, RelationalEntity.builder()
+                    .key(key)
+                    .keyTwo("keysetTies")
+                    .value(value)
+                    .build());
+        }
+        Collections.sort(expected);
+        for (val ascending : Arrays.asList(true, false)) {
+            val fetched = Lists.<String>newArrayList();
+            String token = null;
+            do {
+                //Pages of 3 end inside every group of 5 equal values
+                val page = relationalDao.select(parentKey,
+                                                DetachedCriteria.forClass(RelationalEntity.class)
+                                                        .add(Restrictions.eq("keyTwo", "keysetTies")),
+                                                KeysetPageRequest.builder()
+                                                        .sortProperty("value")
+                                                        .ascending(ascending)
+                                                        .pageToken(token)
+                                                        .pageSize(3)
+                                                        .build());
+                page.getItems().forEach(item -> fetched.add(item.getValue() + ":" + item.getKey()));
+                token = page.getNextPageToken();
+            } while (null != token);
+            val ordered = Lists.newArrayList(expected);
+            if (!ascending) {
+                Collections.reverse(ordered);
+            }
+            assertEquals(ordered, fetched);
+        }
+    }
+
+    @Test
+    public void testKeysetPageTokenKeepsSortValues() {
+        val token = new KeysetPageToken("createdAt", true);
+        val time = LocalDateTime.of(2020, 2, 29, 10, 15, 30, 123456789);
+        val instant = Instant.ofEpochSecond(1600000000L, 987654321);
+        val date = new Date(1600000000123L);
+        val amount = new BigDecimal("12345678901234567.891");
+        token.getPositions().put(0, Arrays.asList(time, 1L));
+        token.getPositions().put(1, Arrays.asList(instant, 2L));
+        token.getPositions().put(2, Arrays.asList(date, 3L));
+        token.getPositions().put(3, Arrays.asList(amount, 4L));
+        val decoded = KeysetPageToken.decode(token.encode());
+        assertEquals(time, decoded.value(decoded.getPositions().get(0).get(0), LocalDateTime.class));
+        assertEquals(instant, decoded.value(decoded.getPositions().get(1).get(0), Instant.class));
+        assertEquals(date, decoded.value(decoded.getPositions().get(2).get(0), Date.class));
+        assertEquals(amount, decoded.value(decoded.getPositions().get(3).get(0), BigDecimal.class));
+        assertEquals(4L, (long) decoded.value(decoded.getPositions().get(3).get(1), Long.class));
+    }
+
+    @Test
+    public void testScatterGatherStream() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            relationalDao.save("parent" + i, RelationalEntity.builder()
+                    .key(String.valueOf(i))
+                    .keyTwo("stream")
+                    .value(UUID.randomUUID().toString())
+                    .build());
+        }
+        try (val stream = relationalDao.scatterGatherStream(DetachedCriteria.forClass(RelationalEntity.class)
+                                                                    .add(Restrictions.eq("keyTwo", "stream")), 3)) {
+            assertEquals(40, stream.map(RelationalEntity::getKey).distinct().count());
+        }
+    }
+}
@@ -46,6 +46,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -160,6 +161,32 @@ public class LockTest {
         assertEquals("Changed", lookupDao.get("0").get().getName());
     }
 
+    @Test
+    public void testPersistAsync() throws Exception {
+        SomeLookupObject p1 = SomeLookupObject.builder()
+                .myId("0")
+                .name("Parent 1")
+                .build();
+
+        val saved = lookupDao.saveAndGetExecutor(p1)
+                .save(relationDao, parent -> SomeOtherObject.builder()
+                        .myId(parent.getMyId())
+                        .value("Hello")
+                        .build())
+                .mutate(parent -> parent.setName("Changed"))
+                .executeAsync()
+                .get();
+
+        assertEquals("Changed", saved.getName());
+        assertEquals("Changed", lookupDao.get("0").get().getName());
+
+        val failure = lookupDao.lockAndGetExecutor("0")
+                .filter(parent -> false)
+                .executeAsync();
+        val exception = assertThrows(ExecutionException.class, failure::get);
+        assertTrue(exception.getCause() instanceof IllegalArgumentException);
+    }
+
     @Test
     public void testUpdateById() throws Exception {
         SomeLookupObject p1 = SomeLookupObject.builder()
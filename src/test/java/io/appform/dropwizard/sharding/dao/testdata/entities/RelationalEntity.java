@@ -30,4 +30,6 @@ public class RelationalEntity {
 
     private String value;
 
+    private long amount;
+
 }
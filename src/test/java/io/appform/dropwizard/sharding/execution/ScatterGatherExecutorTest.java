@@ -0,0 +1,101 @@
+package io.appform.dropwizard.sharding.execution;
+
+import com.google.common.base.Stopwatch;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.appform.dropwizard.sharding.exceptions.ShardTimeoutException;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScatterGatherExecutorTest {
+
+    private ScatterGatherExecutor executor;
+
+    @AfterEach
+    public void after() {
+        if (null != executor) {
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testResultsAreInShardOrder() {
+        executor = ScatterGatherExecutor.create(new ShardingBundleOptions(), 8);
+        val results = executor.execute(8, shardId -> {
+            sleep(10L * (8 - shardId));
+            return shardId;
+        });
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), results);
+    }
+
+    @Test
+    public void testLatencyIsBoundBySlowestShard() {
+        executor = ScatterGatherExecutor.create(new ShardingBundleOptions(), 16);
+        val stopwatch = Stopwatch.createStarted();
+        executor.execute(16, shardId -> {
+            sleep(200);
+            return shardId;
+        });
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) < 16 * 200 / 2);
+    }
+
+    @Test
+    public void testShardTimeout() {
+        executor = ScatterGatherExecutor.create(ShardingBundleOptions.builder()
+                                                        .scatterGatherShardTimeoutMs(100)
+                                                        .build(), 2);
+        val exception = assertThrows(ShardTimeoutException.class, () -> executor.execute(2, shardId -> {
+            if (shardId == 1) {
+                sleep(5_000);
+            }
+            return shardId;
+        }));
+        assertEquals(1, exception.getShard());
+    }
+
+    @Test
+    public void testShardFailure() {
+        executor = ScatterGatherExecutor.create(new ShardingBundleOptions(), 4);
+        val exception = assertThrows(RuntimeException.class, () -> executor.execute(4, shardId -> {
+            if (shardId == 2) {
+                throw new IllegalStateException("Shard is down");
+            }
+            return shardId;
+        }));
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testTolerantExecution() {
+        executor = ScatterGatherExecutor.create(new ShardingBundleOptions(), 4);
+        val result = executor.executeTolerant(4, shardId -> shardId == 3, 200, shardId -> {
+            if (shardId == 1) {
+                throw new IllegalStateException("Shard is down");
+            }
+            if (shardId == 2) {
+                sleep(5_000);
+            }
+            return shardId;
+        });
+        assertFalse(result.isComplete());
+        assertEquals(Collections.singletonMap(0, 0), result.getResult());
+        assertTrue(result.getFailedShards().get(1) instanceof IllegalStateException);
+        assertEquals(Collections.singleton(2), result.getTimedOutShards());
+        assertEquals(Collections.singleton(3), result.getSkippedShards());
+    }
+
+    @SneakyThrows
+    private static void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+}
@@ -0,0 +1,83 @@
+package io.appform.dropwizard.sharding.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import io.appform.dropwizard.sharding.admin.BucketTrafficTask;
+import io.appform.dropwizard.sharding.config.ShardingBundleOptions;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.utils.ShardCalculator;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BucketTrafficTrackerTest {
+
+    @Test
+    public void testHotBucketsAndKeys() {
+        val tracker = new BucketTrafficTracker(1024, 1);
+        IntStream.range(0, 10_000).forEach(i -> tracker.record(i % 1024, "key-" + i));
+        IntStream.range(0, 5_000).forEach(i -> tracker.record(7, "hot"));
+
+        val hotBuckets = tracker.hotBuckets(3);
+        assertEquals(3, hotBuckets.size());
+        assertEquals(7, hotBuckets.get(0).getBucketId());
+        assertEquals(5_010, hotBuckets.get(0).getCount());
+        assertEquals(5_010, tracker.count(7));
+
+        val hotKeys = tracker.hotKeys(1);
+        assertEquals("hot", hotKeys.get(0).getKey());
+        assertTrue(hotKeys.get(0).getEstimatedCount() >= 5_000);
+        assertTrue(tracker.skew() > 300);
+
+        tracker.reset();
+        assertEquals(0, tracker.count(7));
+        assertTrue(tracker.hotBuckets(3).isEmpty());
+        assertTrue(tracker.hotKeys(3).isEmpty());
+        assertEquals(0, tracker.skew(), 0.0001);
+    }
+
+    @Test
+    public void testShardCalculatorRecordsTraffic() throws Exception {
+        val shardManager = new BalancedShardManager(4);
+        val tracker = BucketTrafficTracker.create(ShardingBundleOptions.builder().hotKeySampleRate(1).build(),
+                                                  shardManager.numBuckets());
+        val calculator = new ShardCalculator<String>(shardManager,
+                                                     new ConsistentHashBucketIdExtractor<>(shardManager),
+                                                     tracker);
+        IntStream.range(0, 100).forEach(i -> calculator.shardId("hot"));
+        calculator.shardIds(Collections.nCopies(50, "hot"));
+        assertEquals(150, tracker.count(calculator.bucketId("hot")));
+
+        val metricRegistry = new MetricRegistry();
+        tracker.registerMetrics(metricRegistry, "db.sharding.default.traffic", new ShardingBundleOptions());
+        val gauges = metricRegistry.getGauges();
+        assertEquals(1024.0, gauges.get("db.sharding.default.traffic.skew").getValue());
+        assertEquals(calculator.bucketId("hot"), gauges.get("db.sharding.default.traffic.hot_buckets.rank_1.bucket")
+                .getValue());
+        assertEquals(150L, gauges.get("db.sharding.default.traffic.hot_buckets.rank_1.count").getValue());
+        assertEquals(150L, gauges.get("db.sharding.default.traffic.hot_keys.rank_1.count").getValue());
+        assertEquals(-1, gauges.get("db.sharding.default.traffic.hot_buckets.rank_2.bucket").getValue());
+        assertTrue(gauges.values().stream().allMatch(gauge -> gauge.getValue() instanceof Number));
+
+        val output = new StringWriter();
+        val task = new BucketTrafficTask(tracker, shardManager, calculator.routing());
+        task.execute(Collections.singletonMap("top", Collections.singletonList("1")), new PrintWriter(output));
+        assertTrue(output.toString().contains("bucket: " + calculator.bucketId("hot")
+                                                      + " shard: " + calculator.shardId("hot") + " count: 150"));
+        assertTrue(output.toString().contains("key: hot count: ~150"));
+
+        val target = (calculator.shardId("hot") + 1) % shardManager.numShards();
+        calculator.moveBucket(calculator.bucketId("hot"), target);
+        val moved = new StringWriter();
+        task.execute(Collections.singletonMap("top", Collections.singletonList("1")), new PrintWriter(moved));
+        assertTrue(moved.toString().contains("bucket: " + calculator.bucketId("hot")
+                                                     + " shard: " + target + " (moved)"));
+    }
+}
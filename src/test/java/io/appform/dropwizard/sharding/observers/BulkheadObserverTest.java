@@ -0,0 +1,80 @@
+package io.appform.dropwizard.sharding.observers;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import io.appform.dropwizard.sharding.config.BulkheadConfig;
+import io.appform.dropwizard.sharding.exceptions.ShardBulkheadFullException;
+import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
+import io.appform.dropwizard.sharding.observers.internal.BulkheadObserver;
+import io.appform.dropwizard.sharding.observers.internal.TerminalTransactionObserver;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ */
+public class BulkheadObserverTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final BulkheadObserver observer = new BulkheadObserver(new TerminalTransactionObserver(),
+                                                                   BulkheadConfig.builder()
+                                                                           .maxConcurrentCallsPerShard(1)
+                                                                           .build(),
+                                                                   metricRegistry);
+
+    @Test
+    @SneakyThrows
+    public void testRejectionWhenShardIsSaturated() {
+        val started = new CountDownLatch(1);
+        val release = new CountDownLatch(1);
+        val slowCall = CompletableFuture.supplyAsync(() -> observer.execute(context("shard_0"), () -> {
+            started.countDown();
+            await(release);
+            return "done";
+        }));
+        started.await();
+
+        val exception = assertThrows(ShardBulkheadFullException.class,
+                                     () -> observer.execute(context("shard_0"), () -> "rejected"));
+        assertEquals("shard_0", exception.getShardName());
+        assertEquals("healthy", observer.execute(context("shard_1"), () -> "healthy"));
+        assertEquals(1, gauge("db.sharding.bulkhead.shard_0.inflight"));
+        assertEquals(1, metricRegistry.meter("db.sharding.bulkhead.shard_0.rejected").getCount());
+
+        release.countDown();
+        assertEquals("done", slowCall.get());
+        assertEquals(0, gauge("db.sharding.bulkhead.shard_0.inflight"));
+    }
+
+    @Test
+    public void testNestedCallsOnSameShard() {
+        assertEquals("nested", observer.execute(context("shard_0"),
+                                                () -> observer.execute(context("shard_0"), () -> "nested")));
+    }
+
+    private int gauge(String name) {
+        return (Integer) ((Gauge<?>) metricRegistry.getGauges().get(name)).getValue();
+    }
+
+    private static TransactionExecutionContext context(String shardName) {
+        return TransactionExecutionContext.builder()
+                .opType("get")
+                .shardName(shardName)
+                .daoClass(BulkheadObserverTest.class)
+                .entityClass(String.class)
+                .build();
+    }
+
+    @SneakyThrows
+    private static void await(CountDownLatch latch) {
+        latch.await();
+    }
+}
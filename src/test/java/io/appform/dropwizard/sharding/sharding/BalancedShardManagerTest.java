@@ -57,4 +57,13 @@ public class BalancedShardManagerTest {
         BalancedShardManager shardManager = new BalancedShardManager(16);
         assertEquals(15, shardManager.shardForBucket(1023));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAllBucketsAreRouted() {
+        BalancedShardManager shardManager = new BalancedShardManager(16);
+        for (int bucket = 0; bucket < shardManager.numBuckets(); bucket++) {
+            assertEquals(bucket / 64, shardManager.shardForBucket(bucket));
+        }
+        assertThrows(IllegalArgumentException.class, () -> shardManager.shardForBucket(1024));
+    }
+}
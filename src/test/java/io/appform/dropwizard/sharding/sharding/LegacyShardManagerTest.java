@@ -54,4 +54,13 @@ public class LegacyShardManagerTest {
         LegacyShardManager shardManager = new LegacyShardManager(16);
         assertEquals(15, shardManager.shardForBucket(999));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAllBucketsAreRouted() {
+        LegacyShardManager shardManager = new LegacyShardManager(16);
+        for (int bucket = 0; bucket < shardManager.numBuckets(); bucket++) {
+            assertEquals(Math.min(bucket / 62, 15), shardManager.shardForBucket(bucket));
+        }
+        assertThrows(IllegalArgumentException.class, () -> shardManager.shardForBucket(1000));
+    }
+}
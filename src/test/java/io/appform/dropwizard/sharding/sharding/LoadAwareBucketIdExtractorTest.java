@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import io.appform.dropwizard.sharding.ShardInfoProvider;
+import io.appform.dropwizard.sharding.execution.TransactionExecutionContext;
+import io.appform.dropwizard.sharding.observers.internal.ShardLoadObserver;
+import io.appform.dropwizard.sharding.observers.internal.TerminalTransactionObserver;
+import io.appform.dropwizard.sharding.sharding.impl.LoadAwareBucketIdExtractor;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadAwareBucketIdExtractorTest {
+
+    private final ShardManager shardManager = new BalancedShardManager(2);
+
+    @Test
+    public void testPlacementPrefersLessLoadedShard() {
+        val extractor = new LoadAwareBucketIdExtractor<String>(shardManager, shardId -> shardId == 0 ? 10 : 0);
+        int onIdleShard = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (shardManager.shardForBucket(extractor.bucketId("key")) == 1) {
+                onIdleShard++;
+            }
+        }
+        //Two choices put ~75% of keys on the idle shard, plain random would put ~50%
+        assertTrue(onIdleShard > 650, "Keys on idle shard: " + onIdleShard);
+    }
+
+    @Test
+    public void testPlacementAvoidsBlacklistedShard() {
+        val extractor = new LoadAwareBucketIdExtractor<String>(shardManager, shardId -> 0);
+        shardManager.blacklistShard(1);
+        try {
+            int onHealthyShard = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (shardManager.isMappedToValidShard(extractor.bucketId("key"))) {
+                    onHealthyShard++;
+                }
+            }
+            assertTrue(onHealthyShard > 650, "Keys on healthy shard: " + onHealthyShard);
+        } finally {
+            shardManager.unblacklistShard(1);
+        }
+    }
+
+    @Test
+    public void testObserverTracksInflightCalls() {
+        val shardInfoProvider = new ShardInfoProvider("test");
+        val observer = new ShardLoadObserver(new TerminalTransactionObserver(), shardInfoProvider, 2);
+        val context = TransactionExecutionContext.builder()
+                .opType("get")
+                .shardName(shardInfoProvider.shardName(1))
+                .daoClass(LoadAwareBucketIdExtractorTest.class)
+                .entityClass(String.class)
+                .build();
+        val seen = observer.execute(context, () -> observer.load(1));
+        assertEquals(1.0, seen);
+        assertEquals(0.0, observer.load(0));
+        assertEquals(0.0, observer.load(1));
+        //Nested calls on the same shard are counted once
+        val nested = observer.execute(context, () -> observer.execute(context, () -> observer.load(1)));
+        assertEquals(1.0, nested);
+        assertEquals(0.0, observer.load(1));
+    }
+}
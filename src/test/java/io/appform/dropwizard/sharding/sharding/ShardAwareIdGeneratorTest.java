@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import io.appform.dropwizard.sharding.sharding.impl.EmbeddedBucketIdExtractor;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardAwareIdGeneratorTest {
+
+    @Test
+    public void testBucketIsEmbeddedInId() {
+        for (ShardManager shardManager : new ShardManager[]{new BalancedShardManager(16), new LegacyShardManager(16)}) {
+            val generator = new ShardAwareIdGenerator(shardManager, 3, 4);
+            val extractor = new EmbeddedBucketIdExtractor(shardManager);
+            val keyExtractor = ShardingKeyType.SHARD_AWARE_ID.extractor(shardManager);
+            for (int bucket = 0; bucket < shardManager.numBuckets(); bucket++) {
+                val id = generator.nextId(bucket);
+                assertTrue(id > 0);
+                assertEquals(bucket, generator.bucketId(id));
+                assertEquals(bucket, extractor.bucketId(id));
+                assertEquals(bucket, keyExtractor.bucketId(Long.toString(id)));
+            }
+        }
+    }
+
+    @Test
+    public void testIdsAreTimeOrderedAndUnique() {
+        val shardManager = new BalancedShardManager(4);
+        val now = new long[]{ShardAwareIdGenerator.EPOCH + 1000};
+        val generator = new ShardAwareIdGenerator(shardManager, 0, 0, () -> now[0]);
+        val ids = new HashSet<Long>();
+        long last = 0;
+        //More ids than the 4096 the sequence allows in a millisecond, on a clock that does not move
+        for (int i = 0; i < 10000; i++) {
+            val id = generator.nextId(0);
+            assertTrue(id > last);
+            last = id;
+            assertTrue(ids.add(id));
+            assertTrue(ids.add(generator.nextId()));
+        }
+        now[0] -= 500;
+        val afterClockMovedBack = generator.nextId(0);
+        assertTrue(afterClockMovedBack > last);
+
+        now[0] += 10000;
+        val later = generator.nextId(0);
+        assertEquals(now[0], ShardAwareIdGenerator.timestamp(later));
+    }
+
+    @Test
+    public void testColocatedIdsAndInvalidInput() {
+        val shardManager = new BalancedShardManager(4);
+        val generator = new ShardAwareIdGenerator(shardManager);
+        val parentExtractor = ShardingKeyType.STRING.extractor(shardManager);
+        val childId = generator.nextId("parent", parentExtractor);
+        assertEquals(parentExtractor.bucketId("parent"), generator.bucketId(childId));
+
+        assertThrows(IllegalArgumentException.class, () -> generator.nextId(shardManager.numBuckets()));
+        assertThrows(IllegalArgumentException.class, () -> new ShardAwareIdGenerator(shardManager, 0, 9));
+        assertThrows(IllegalArgumentException.class, () -> new ShardAwareIdGenerator(shardManager, 16, 4));
+        assertThrows(IllegalArgumentException.class, () -> ShardAwareIdGenerator.bucketId(-1L, 1000));
+    }
+}
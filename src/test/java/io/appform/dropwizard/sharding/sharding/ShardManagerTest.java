@@ -20,7 +20,14 @@ package io.appform.dropwizard.sharding.sharding;
 import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class ShardManagerTest {
@@ -47,4 +54,91 @@ public class ShardManagerTest {
         Thread.sleep(5000); //Sleeping for 5 seconds
         assertEquals(0, shardManager.shardForBucket(100));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBlacklistingIsImmediate() {
+        ShardManager shardManager = new BalancedShardManager(8);
+        shardManager.blacklistShard(0);
+        assertTrue(shardManager.isBlacklisted(0));
+        assertFalse(shardManager.isMappedToValidShard(0));
+        assertThrows(ShardBlacklistedException.class, () -> shardManager.shardForBucket(0));
+        shardManager.unblacklistShard(0);
+        assertFalse(shardManager.isBlacklisted(0));
+        assertEquals(0, shardManager.shardForBucket(0));
+    }
+
+    @Test
+    public void testBlacklistingPushedByStore() {
+        InMemoryLocalShardBlacklistingStore store = new InMemoryLocalShardBlacklistingStore();
+        ShardManager shardManager = new BalancedShardManager(8, store);
+        store.blacklist(3);
+        assertTrue(shardManager.isBlacklisted(3));
+        store.unblacklist(3);
+        assertFalse(shardManager.isBlacklisted(3));
+    }
+
+    @Test
+    public void testBlacklistingReconciledFromStore() {
+        Set<Integer> blacklisted = new HashSet<>();
+        ShardBlacklistingStore store = new ShardBlacklistingStore() {
+            @Override
+            public void blacklist(int shardId) {
+                blacklisted.add(shardId);
+            }
+
+            @Override
+            public void unblacklist(int shardId) {
+                blacklisted.remove(shardId);
+            }
+
+            @Override
+            public boolean blacklisted(int shardId) {
+                return blacklisted.contains(shardId);
+            }
+        };
+        blacklisted.add(2);
+        ShardManager shardManager = new LegacyShardManager(8, store);
+        //Read from the store on first use
+        assertTrue(shardManager.isBlacklisted(2));
+        blacklisted.add(5);
+        assertFalse(shardManager.isBlacklisted(5));
+        shardManager.reconcileBlacklist();
+        assertTrue(shardManager.isBlacklisted(5));
+        blacklisted.remove(5);
+        shardManager.reconcileBlacklist();
+        assertFalse(shardManager.isBlacklisted(5));
+        shardManager.start();
+        shardManager.stop();
+    }
+
+    @Test
+    public void testStaleBlacklistRefreshedWithoutStart() throws Exception {
+        Set<Integer> blacklisted = ConcurrentHashMap.newKeySet();
+        ShardBlacklistingStore store = new ShardBlacklistingStore() {
+            @Override
+            public void blacklist(int shardId) {
+                blacklisted.add(shardId);
+            }
+
+            @Override
+            public void unblacklist(int shardId) {
+                blacklisted.remove(shardId);
+            }
+
+            @Override
+            public boolean blacklisted(int shardId) {
+                return blacklisted.contains(shardId);
+            }
+        };
+        ShardManager shardManager = new BalancedShardManager(8, store);
+        assertFalse(shardManager.isBlacklisted(4));
+        blacklisted.add(4);
+        shardManager.blacklistRefreshIntervalNanos = 0;
+        //Reads of a stale snapshot refresh it in the background
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!shardManager.isBlacklisted(4) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(shardManager.isBlacklisted(4));
+    }
+}
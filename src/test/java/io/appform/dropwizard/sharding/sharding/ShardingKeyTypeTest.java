@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import io.appform.dropwizard.sharding.sharding.impl.ByteArrayBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.LongBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.UUIDBucketIdExtractor;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardingKeyTypeTest {
+
+    private final ShardManager shardManager = new BalancedShardManager(16);
+
+    @Test
+    public void testStringKeysAreHashedAsText() {
+        val extractor = ShardingKeyType.STRING.extractor(shardManager);
+        val consistentHash = new ConsistentHashBucketIdExtractor<String>(shardManager);
+        assertEquals(consistentHash.bucketId("12345"), extractor.bucketId("12345"));
+    }
+
+    @Test
+    public void testLongKeysRouteLikeTypedValues() {
+        val extractor = ShardingKeyType.LONG.extractor(shardManager);
+        val typed = new LongBucketIdExtractor(shardManager);
+        val random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            val value = random.nextLong();
+            val bucket = extractor.bucketId(Long.toString(value));
+            assertEquals(typed.bucketId(value), bucket);
+            assertTrue(bucket >= 0 && bucket < shardManager.numBuckets());
+        }
+        assertThrows(NumberFormatException.class, () -> extractor.bucketId("abc"));
+    }
+
+    @Test
+    public void testUUIDKeysRouteLikeTypedValues() {
+        val extractor = ShardingKeyType.UUID.extractor(shardManager);
+        val typed = new UUIDBucketIdExtractor(shardManager);
+        for (int i = 0; i < 1000; i++) {
+            val value = UUID.randomUUID();
+            assertEquals(typed.bucketId(value), extractor.bucketId(value.toString()));
+            assertEquals(typed.bucketId(value), extractor.bucketId(value.toString().toUpperCase()));
+        }
+        //Non canonical forms are still accepted
+        assertEquals(typed.bucketId(UUID.fromString("1-2-3-4-5")), extractor.bucketId("1-2-3-4-5"));
+        assertThrows(IllegalArgumentException.class, () -> extractor.bucketId("not-a-uuid"));
+    }
+
+    @Test
+    public void testByteKeysRouteLikeTypedValues() {
+        val extractor = ShardingKeyType.BYTES.extractor(shardManager);
+        val typed = new ByteArrayBucketIdExtractor(shardManager);
+        val random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            val value = new byte[random.nextInt(32)];
+            random.nextBytes(value);
+            val key = ShardingKeyType.toKey(value);
+            assertEquals(typed.bucketId(value), extractor.bucketId(key));
+            assertEquals(typed.bucketId(value), extractor.bucketId(key.toUpperCase()));
+        }
+        assertEquals("00ff7f80", ShardingKeyType.toKey(new byte[]{0, -1, 127, -128}));
+        assertThrows(IllegalArgumentException.class, () -> extractor.bucketId("abc"));
+        assertThrows(IllegalArgumentException.class, () -> extractor.bucketId("zz"));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WeightedShardManagerTest {
+
+    @Test
+    public void testNonPowerOfTwoShards() {
+        WeightedShardManager shardManager = new WeightedShardManager(5);
+        int[] counts = bucketCounts(shardManager);
+        assertEquals(Arrays.toString(new int[]{205, 205, 205, 205, 204}), Arrays.toString(counts));
+        assertEquals(4, shardManager.shardForBucket(1023));
+    }
+
+    @Test
+    public void testWeightedAllocation() {
+        WeightedShardManager shardManager = new WeightedShardManager(
+                Arrays.asList(1, 2, 0, 5), new InMemoryLocalShardBlacklistingStore());
+        int[] counts = bucketCounts(shardManager);
+        assertEquals(Arrays.toString(new int[]{128, 256, 0, 640}), Arrays.toString(counts));
+        assertEquals(0, shardManager.shardForBucket(0));
+        assertEquals(1, shardManager.shardForBucket(128));
+        assertEquals(3, shardManager.shardForBucket(384));
+    }
+
+    @Test
+    public void testUpdateWeights() {
+        WeightedShardManager shardManager = new WeightedShardManager(3);
+        shardManager.updateWeights(Arrays.asList(1, 1, 2));
+        assertEquals(Arrays.toString(new int[]{256, 256, 512}), Arrays.toString(bucketCounts(shardManager)));
+        assertEquals(Arrays.asList(1, 1, 2), shardManager.weights());
+    }
+
+    @Test
+    public void testInvalidWeights() {
+        WeightedShardManager shardManager = new WeightedShardManager(3);
+        assertThrows(IllegalArgumentException.class, () -> shardManager.updateWeights(Arrays.asList(1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> shardManager.updateWeights(Arrays.asList(1, -1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> shardManager.updateWeights(Arrays.asList(0, 0, 0)));
+        assertThrows(IllegalArgumentException.class, () -> shardManager.shardForBucket(1024));
+    }
+
+    private static int[] bucketCounts(ShardManager shardManager) {
+        int[] counts = new int[shardManager.numShards()];
+        for (int bucket = 0; bucket < shardManager.numBuckets(); bucket++) {
+            counts[shardManager.shardForBucket(bucket)]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,79 @@
+package io.appform.dropwizard.sharding.utils;
+
+import com.google.common.hash.Hashing;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.LegacyShardManager;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing must not change for existing keys. murmur3-golden.tsv has keys along with the hash generated by
+ * {@code Hashing.murmur3_128().hashString(key, UTF_8).asInt()}, which was used for routing earlier.
+ */
+public class MurmurHash3Test {
+
+    @Test
+    public void testGoldenFile() throws Exception {
+        val balanced = new ConsistentHashBucketIdExtractor<String>(new BalancedShardManager(16));
+        val legacy = new ConsistentHashBucketIdExtractor<String>(new LegacyShardManager(16));
+        int numKeys = 0;
+        try (val reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/murmur3-golden.tsv"), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                val separator = line.lastIndexOf('\t');
+                val key = line.substring(0, separator);
+                val hash = Integer.parseInt(line.substring(separator + 1));
+                assertEquals(hash, MurmurHash3.hash128AsInt(key), "Hash mismatch for key: " + key);
+                assertEquals(bucket(hash, 1024), balanced.bucketId(key), "Bucket mismatch for key: " + key);
+                assertEquals(bucket(hash, 1000), legacy.bucketId(key), "Bucket mismatch for key: " + key);
+                numKeys++;
+            }
+        }
+        assertEquals(1001, numKeys);
+    }
+
+    @Test
+    public void testMatchesGuavaForRandomInput() {
+        val random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            val builder = new StringBuilder();
+            val length = random.nextInt(64);
+            for (int j = 0; j < length; j++) {
+                //Covers all char ranges including unpaired surrogates
+                builder.append((char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10000)));
+            }
+            val input = builder.toString();
+            assertEquals(Hashing.murmur3_128().hashString(input, StandardCharsets.UTF_8).asInt(),
+                         MurmurHash3.hash128AsInt(builder));
+        }
+    }
+
+    @Test
+    public void testPrimitiveInputsMatchGuava() {
+        val random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            val first = random.nextLong();
+            val second = random.nextLong();
+            assertEquals(Hashing.murmur3_128().hashLong(first).asInt(), MurmurHash3.hash128AsInt(first));
+            assertEquals(Hashing.murmur3_128().newHasher().putLong(first).putLong(second).hash().asInt(),
+                         MurmurHash3.hash128AsInt(first, second));
+            val bytes = new byte[random.nextInt(64)];
+            random.nextBytes(bytes);
+            assertEquals(Hashing.murmur3_128().hashBytes(bytes).asInt(), MurmurHash3.hash128AsInt(bytes));
+        }
+    }
+
+    private static int bucket(int hash, int numBuckets) {
+        hash *= hash < 0 ? -1 : 1;
+        return hash % numBuckets;
+    }
+}
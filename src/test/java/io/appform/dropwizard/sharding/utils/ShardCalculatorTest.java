@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Santanu Sinha <santanu.sinha@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package io.appform.dropwizard.sharding.utils;
+
+import io.appform.dropwizard.sharding.exceptions.ShardBlacklistedException;
+import io.appform.dropwizard.sharding.sharding.BalancedShardManager;
+import io.appform.dropwizard.sharding.sharding.BucketRouting;
+import io.appform.dropwizard.sharding.sharding.impl.ConsistentHashBucketIdExtractor;
+import io.appform.dropwizard.sharding.sharding.impl.RandomBucketIdExtractor;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardCalculatorTest {
+
+    @Test
+    public void testBatchRoutingMatchesSingleKeyRouting() {
+        val shardManager = new BalancedShardManager(16);
+        val calculator = new ShardCalculator<String>(shardManager,
+                                                     new ConsistentHashBucketIdExtractor<>(shardManager));
+        List<String> keys = IntStream.range(0, 1000)
+                .mapToObj(i -> "key-" + i)
+                .collect(Collectors.toList());
+
+        val shardIds = calculator.shardIds(keys);
+        assertArrayEquals(keys.stream().mapToInt(calculator::shardId).toArray(), shardIds);
+
+        val partition = calculator.groupByShard(keys);
+        val regrouped = new ArrayList<String>();
+        int previousShard = -1;
+        for (int i = 0; i < partition.size(); i++) {
+            val shardId = partition.shardIdAt(i);
+            assertTrue(shardId > previousShard);
+            previousShard = shardId;
+            partition.keysAt(i).forEach(key -> assertEquals(shardId, calculator.shardId(key)));
+            regrouped.addAll(partition.keys(shardId));
+        }
+        assertEquals(keys.size(), regrouped.size());
+        assertTrue(regrouped.containsAll(keys));
+        assertTrue(partition.keys(100).isEmpty());
+    }
+
+    @Test
+    public void testBatchRoutingFailsOnBlacklistedShard() {
+        val shardManager = new BalancedShardManager(16);
+        val calculator = new ShardCalculator<String>(shardManager,
+                                                     new ConsistentHashBucketIdExtractor<>(shardManager));
+        List<String> keys = IntStream.range(0, 1000)
+                .mapToObj(i -> "key-" + i)
+                .collect(Collectors.toList());
+        shardManager.blacklistShard(3);
+        assertThrows(ShardBlacklistedException.class, () -> calculator.shardIds(keys));
+        assertThrows(ShardBlacklistedException.class, () -> calculator.groupByShard(keys));
+    }
+
+    @Test
+    public void testMovedBucketsAreRouted() {
+        val shardManager = new BalancedShardManager(16);
+        val calculator = new ShardCalculator<String>(shardManager,
+                                                     new ConsistentHashBucketIdExtractor<>(shardManager));
+        val bucketId = calculator.bucketId("key");
+        val originalShard = calculator.shardId("key");
+        val targetShard = (originalShard + 1) % 16;
+        assertTrue(calculator.bucketMap().isEmpty());
+
+        assertEquals(1, calculator.moveBucket(bucketId, targetShard));
+        assertEquals(targetShard, calculator.shardId("key"));
+        assertEquals(targetShard, calculator.shardForBucket(bucketId));
+        assertArrayEquals(new int[]{targetShard}, calculator.shardIds(Collections.singletonList("key")));
+        assertEquals(Collections.singletonMap(bucketId, targetShard), calculator.bucketMap().moves());
+
+        //Blacklisting applies to the shard the bucket has moved to
+        shardManager.blacklistShard(originalShard);
+        assertEquals(targetShard, calculator.shardId("key"));
+        shardManager.blacklistShard(targetShard);
+        assertThrows(ShardBlacklistedException.class, () -> calculator.shardId("key"));
+        assertFalse(calculator.isOnValidShard("key"));
+    }
+
+    @Test
+    public void testWritesDuringMoveAreRecorded() {
+        val shardManager = new BalancedShardManager(16);
+        val routing = new BucketRouting(shardManager.numBuckets());
+        val calculator = new ShardCalculator<String>(shardManager,
+                                                     new ConsistentHashBucketIdExtractor<>(shardManager),
+                                                     null,
+                                                     routing);
+        val other = new ShardCalculator<String>(shardManager,
+                                                new ConsistentHashBucketIdExtractor<>(shardManager),
+                                                null,
+                                                routing);
+        val bucketId = calculator.bucketId("key");
+        val sourceShard = calculator.shardId("key");
+        val targetShard = (sourceShard + 1) % 16;
+
+        val move = calculator.startMove(bucketId, targetShard);
+        assertThrows(IllegalStateException.class, () -> other.startMove(bucketId, targetShard));
+        assertEquals(sourceShard, (int) other.write("key", shardId -> shardId));
+        val synced = new ArrayList<Object>();
+        assertEquals(0, move.syncWrittenKeys(synced::add));
+        assertEquals(Collections.singletonList("key"), synced);
+
+        //A key that fails to sync keeps the bucket on the source shard
+        other.write("key", shardId -> shardId);
+        assertThrows(IllegalStateException.class, () -> routing.switchOver(move, key -> false));
+        assertEquals(sourceShard, other.shardId("key"));
+
+        assertEquals(1, routing.switchOver(move, key -> true));
+        routing.endMove(move);
+        assertEquals(targetShard, other.shardId("key"));
+        assertEquals(targetShard, (int) other.write("key", shardId -> shardId));
+        assertThrows(IllegalStateException.class,
+                     () -> other.writeRouted("key", bucketId, sourceShard, () -> true));
+        assertTrue(other.writeRouted("key", bucketId, targetShard, () -> true));
+    }
+
+    @Test
+    public void testRoutedWritesKeepTheirBucket() {
+        val shardManager = new BalancedShardManager(16);
+        val calculator = new ShardCalculator<String>(shardManager, new RandomBucketIdExtractor<>(shardManager));
+        for (int i = 0; i < 100; i++) {
+            val bucketId = calculator.routedBucketId("key");
+            val shardId = calculator.shardForBucket(bucketId);
+            assertTrue(calculator.writeRouted("key", bucketId, shardId, () -> true));
+        }
+    }
+}